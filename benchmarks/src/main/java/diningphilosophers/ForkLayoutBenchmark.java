@@ -0,0 +1,103 @@
+package diningphilosophers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+// Compact against padded forks (--fork-layout) on one ring of `philosophers` forks, allocated back
+// to back the way the simulation lays a table. Only every other seat eats, so seat 2k has forks 2k
+// and 2k+1 to itself and no two threads ever want the same fork: there is no true sharing, and
+// fork contention is ForkProtocolBenchmark's business. Seats are dealt out round robin, so fork
+// 2k+1 and its memory neighbour 2k+2 belong to different threads, and whatever false sharing the
+// layout allows shows up as fewer meals per second in the compact layout.
+//
+// A ring of N philosophers has N / 2 such seats, so at most N / 2 threads can take part; the 5
+// philosopher ring runs with the default 2. Run on a machine with at least as many cores as
+// threads; with fewer, the threads take turns on a core and there is no cache line for them to
+// fight over. Add -prof perfnorm for L1 misses per meal.
+//
+//   java -jar benchmarks/target/benchmarks.jar ForkLayoutBenchmark -p philosophers=64,1024 -t 8
+@org.openjdk.jmh.annotations.Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(2)
+public class ForkLayoutBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Ring {
+        @Param({"5", "64", "1024"})
+        public int philosophers;
+
+        @Param({"compact", "padded"})
+        public String layout;
+
+        @Param({"lock", "atomic"})
+        public String forkType;
+
+        @Param({"0", "50"})
+        public int eatTokens;
+
+        Fork[] forks;
+
+        // Once per trial: forks made together, as in the simulation, and not reshuffled between iterations
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkParams params) {
+            if (params.getThreads() > philosophers / 2) {
+                throw new IllegalStateException(philosophers + " philosophers have seats with forks of their own for at most "
+                        + philosophers / 2 + " threads, not " + params.getThreads());
+            }
+            ForkType type = ForkType.parse(forkType);
+            ForkLayout forkLayout = ForkLayout.parse(layout);
+            forks = new Fork[philosophers];
+            for (int i = 0; i < philosophers; i++) {
+                forks[i] = type.create(i, forkLayout);
+            }
+        }
+    }
+
+    // The seats this thread eats at, 2t, 2(t + threads), ..., none of which shares a fork with another
+    @State(Scope.Thread)
+    public static class Seats {
+        int[] seats;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Ring ring, ThreadParams thread) {
+            int threads = thread.getThreadCount();
+            int count = (ring.philosophers / 2 - thread.getThreadIndex() + threads - 1) / threads;
+            seats = new int[count];
+            for (int i = 0; i < count; i++) {
+                seats[i] = 2 * (thread.getThreadIndex() + i * threads);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void meals(Ring ring, Seats seats) {
+        int id = seats.seats[seats.next];
+        seats.next = seats.next + 1 == seats.seats.length ? 0 : seats.next + 1;
+        Fork left = ring.forks[id];
+        Fork right = ring.forks[id + 1];
+        left.tryPickUp(id); // Always free: nobody else eats with these forks
+        right.tryPickUp(id);
+        Blackhole.consumeCPU(ring.eatTokens);
+        right.putDown(id);
+        left.putDown(id);
+    }
+}
@@ -0,0 +1,294 @@
+package diningphilosophers;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+// Each JMH thread is one philosopher; threads fill tables of `seats` seats in order, so -t 10 with
+// seats=5 is two full tables. Think and eat are CPU burns drawn from `distribution` around the
+// given means, so the numbers reflect fork contention rather than Thread.sleep granularity.
+//
+//   meals          meals/second for the whole think, pick up, eat, put down cycle
+//   forkAcquisition latency of tryToPickUpForks() alone (p50/p99/p999 in the sample-time output)
+//   fairness        Jain's index over meals per philosopher in the iteration, reported next to
+//                   meals (1.0 means every philosopher ate equally often)
+//   retriesPerMeal  times a philosopher gave its forks back and tried again, per meal (backoff)
+//
+// Run with -prof gc for the allocation rate, and -rf json -rff baseline.json to keep a baseline.
+// The left-then-right protocol can deadlock. A watchdog interrupts the diners when no meal has
+// completed for STALL_MILLIS, so a deadlock shows up as a collapsed score instead of a hung run;
+// with left-right+graph the philosopher closing the cycle backs off instead, and with
+// left-right+heuristic the first philosopher to report the stall does. The other strategies
+// cannot deadlock, so they only run without a detector (the simulator rejects one for them too).
+// (JMH's @Fork is spelled out in full below because Fork here is the simulation's fork.)
+@org.openjdk.jmh.annotations.Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(5)
+public class ForkProtocolBenchmark {
+    private static final long STALL_MILLIS = 1000;
+    private static final int PAD = 16; // Longs between per-diner meal counters, keeps them on separate cache lines
+
+    @State(Scope.Benchmark)
+    public static class Dining {
+        @Param({"5", "16"})
+        public int seats;
+
+        @Param({"0", "500"})
+        public int thinkTokens;
+
+        @Param({"100"})
+        public int eatTokens;
+
+        @Param({"uniform", "exponential"})
+        public String distribution;
+
+        @Param({"lock", "atomic"})
+        public String forkType;
+
+        // A strategy, then +graph or +heuristic for the deadlock detector, which lets a deadlocked
+        // philosopher give its forks back instead of waiting for the watchdog
+        @Param({"left-right", "left-right+graph", "left-right+heuristic", "ordered", "chandy-misra", "waiter", "backoff"})
+        public String strategy;
+
+        Philosopher[] philosophers;
+        AcquisitionStrategy acquisitionStrategy;
+        AtomicReferenceArray<Thread> diners;
+        final LongAdder meals = new LongAdder();
+        AtomicLongArray mealsByDiner;
+        private Thread watchdog;
+        private DeadlockDetector deadlockDetector;
+
+        // Fresh forks every iteration so a deadlocked or interrupted iteration cannot leak into the next
+        @Setup(Level.Iteration)
+        public void setUp(BenchmarkParams params) throws IOException {
+            EventLog.install(new SilentEventSink());
+            int diners = params.getThreads();
+            String[] protocol = strategy.split("\\+");
+            SimulationConfig config = SimulationConfig.parse(new String[] {"--strategy=" + protocol[0],
+                    "--detector=" + (protocol.length > 1 ? protocol[1] : "off")});
+            acquisitionStrategy = AcquisitionStrategy.create(config);
+            String detector = config.getDeadlockDetector(acquisitionStrategy);
+            philosophers = new Philosopher[diners];
+            this.diners = new AtomicReferenceArray<>(diners);
+            mealsByDiner = new AtomicLongArray(diners * PAD);
+            WaitForGraph waitForGraph = detector.equals("graph") ? new WaitForGraph(diners) : null;
+            deadlockDetector = detector.equals("heuristic") ? new DeadlockDetector() : null;
+            for (int first = 0, tableId = 1; first < diners; first += seats, tableId++) {
+                Fork[] forks = new Fork[seats];
+                Philosopher[] seated = new Philosopher[seats];
+                for (int i = 0; i < seats; i++) {
+                    forks[i] = ForkType.parse(forkType).create(i);
+                }
+                Table table = new Table(tableId, seated, forks, null);
+                table.watchWith(deadlockDetector);
+                for (int i = 0; i < seats && first + i < diners; i++) {
+                    seated[i] = new Philosopher(first + i, forks[i], forks[(i + 1) % seats], table, acquisitionStrategy, waitForGraph,
+                            ForkSchedule.streamFor(0, first + i), PhaseDurations.DEFAULT);
+                    philosophers[first + i] = seated[i];
+                    acquisitionStrategy.seat(seated[i], forks[i], forks[(i + 1) % seats]);
+                }
+            }
+            if (deadlockDetector != null) {
+                deadlockDetector.setDaemon(true);
+                deadlockDetector.start();
+            }
+            watchdog = new Thread(this::watchForDeadlock, "benchmark-deadlock-watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws InterruptedException {
+            watchdog.interrupt();
+            watchdog.join();
+            if (deadlockDetector != null) {
+                deadlockDetector.interrupt();
+                deadlockDetector.join();
+            }
+        }
+
+        private void watchForDeadlock() {
+            long lastMeals = -1;
+            try {
+                while (true) {
+                    Thread.sleep(STALL_MILLIS);
+                    long current = meals.sum();
+                    if (current == lastMeals) {
+                        for (int i = 0; i < diners.length(); i++) {
+                            Thread diner = diners.get(i);
+                            if (diner != null) {
+                                diner.interrupt();
+                            }
+                        }
+                    }
+                    lastMeals = current;
+                }
+            } catch (InterruptedException e) {
+                // Iteration finished
+            }
+        }
+
+        long tokens(int mean) {
+            if (mean == 0) {
+                return 0;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            switch (distribution) {
+                case "constant":
+                    return mean;
+                case "uniform":
+                    return random.nextLong(2L * mean + 1);
+                case "exponential":
+                    return (long) (-mean * Math.log(1.0 - random.nextDouble()));
+                default:
+                    throw new IllegalArgumentException("Unknown distribution: " + distribution);
+            }
+        }
+
+        Philosopher philosopherFor(ThreadParams thread) {
+            return philosophers[thread.getThreadIndex()];
+        }
+
+        void ate(ThreadParams thread) {
+            meals.increment();
+            int slot = thread.getThreadIndex() * PAD;
+            mealsByDiner.lazySet(slot, mealsByDiner.get(slot) + 1); // Only the owning thread writes its slot
+        }
+
+        long totalMeals() {
+            long sum = 0;
+            for (int i = 0; i < philosophers.length; i++) {
+                sum += mealsByDiner.get(i * PAD);
+            }
+            return sum;
+        }
+
+        // The simulator's own index, so an iteration where nobody ate scores 1.0 here as well
+        double jainFairness() {
+            FairnessSnapshot snapshot = new FairnessSnapshot(Long.MAX_VALUE);
+            for (int i = 0; i < philosophers.length; i++) {
+                snapshot.add(i, i / seats + 1, mealsByDiner.get(i * PAD), 0, 0, 0, 0);
+            }
+            return snapshot.getFairness();
+        }
+    }
+
+    // JMH sums EVENTS counters over threads and over measurement iterations, so each thread reports
+    // an equal share of its iteration's values and the summed scores are per-iteration means
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class IterationStats {
+        public double fairness;
+        public double retriesPerMeal;
+
+        private Dining dining;
+        private int shares;
+
+        @Setup(Level.Iteration)
+        public void setUp(Dining dining, BenchmarkParams params) {
+            this.dining = dining;
+            this.shares = params.getThreads() * params.getMeasurement().getCount();
+            fairness = 0;
+            retriesPerMeal = 0;
+        }
+
+        // Runs once this thread has left the measured loop, before JMH reads the counters
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            fairness = dining.jainFairness() / shares;
+            long meals = dining.totalMeals();
+            retriesPerMeal = meals == 0 ? 0 : (double) dining.acquisitionStrategy.getRetries() / meals / shares;
+        }
+    }
+
+    // Registers the worker thread so the watchdog can interrupt it
+    @State(Scope.Thread)
+    public static class Diner {
+        @Setup(Level.Iteration)
+        public void setUp(Dining dining, ThreadParams thread) {
+            Thread.interrupted(); // Drop an interrupt left over from the previous iteration
+            dining.diners.set(thread.getThreadIndex(), Thread.currentThread());
+        }
+    }
+
+    // Eats, puts the forks down and thinks outside the timed region of forkAcquisition
+    @State(Scope.Thread)
+    public static class HeldForks {
+        private Dining dining;
+        private Philosopher philosopher;
+        private boolean holding;
+
+        private ThreadParams thread;
+
+        @Setup(Level.Iteration)
+        public void setUp(Dining dining, ThreadParams thread) {
+            this.dining = dining;
+            this.thread = thread;
+            this.philosopher = dining.philosopherFor(thread);
+        }
+
+        @TearDown(Level.Invocation)
+        public void finishMeal() {
+            if (holding) {
+                Blackhole.consumeCPU(dining.tokens(dining.eatTokens));
+                philosopher.putDownForks();
+                dining.ate(thread);
+                holding = false;
+            }
+            Blackhole.consumeCPU(dining.tokens(dining.thinkTokens));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public boolean meals(Dining dining, Diner diner, IterationStats stats, ThreadParams thread) {
+        Philosopher philosopher = dining.philosopherFor(thread);
+        Blackhole.consumeCPU(dining.tokens(dining.thinkTokens));
+        try {
+            if (!philosopher.tryToPickUpForks()) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            return false; // Iteration timed out, most likely on a deadlocked table
+        }
+        Blackhole.consumeCPU(dining.tokens(dining.eatTokens));
+        philosopher.putDownForks();
+        dining.ate(thread);
+        return true;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean forkAcquisition(HeldForks held, Diner diner, Dining dining, ThreadParams thread) {
+        try {
+            held.holding = dining.philosopherFor(thread).tryToPickUpForks();
+        } catch (InterruptedException e) {
+            held.holding = false;
+        }
+        return held.holding;
+    }
+}
@@ -0,0 +1,323 @@
+package diningphilosophers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// How a philosopher gets hold of its two forks. Strategies go through Philosopher.acquire/release
+// so fork events and table activity are recorded the same way whichever strategy is active.
+interface AcquisitionStrategy {
+    // Called for every seated philosopher once its table exists, before any thread starts
+    default void seat(Philosopher philosopher, Fork left, Fork right) {
+    }
+
+    // Returns true once the philosopher holds both forks, false if it gave up holding neither
+    boolean pickUpForks(Philosopher philosopher, Fork left, Fork right) throws InterruptedException;
+
+    void putDownForks(Philosopher philosopher, Fork left, Fork right);
+
+    // Whether this strategy can deadlock and so needs a deadlock detector
+    boolean needsDeadlockDetection();
+
+    // How many times a philosopher gave its forks back and tried again
+    default long getRetries() {
+        return 0;
+    }
+
+    static AcquisitionStrategy create(SimulationConfig config) {
+        switch (config.getStrategy()) {
+            case "left-right":
+                return new LeftRightStrategy();
+            case "ordered":
+                return new OrderedStrategy();
+            case "chandy-misra":
+                return new ChandyMisraStrategy();
+            case "waiter":
+                return new WaiterStrategy();
+            case "backoff":
+                return new BackoffStrategy(config.getTryLockTimeoutNanos(), config.getBackoffMinNanos(),
+                        config.getBackoffMaxNanos(), config.isBackoffJitter());
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + config.getStrategy());
+        }
+    }
+}
+
+// The original protocol: left fork, then right fork while still holding the left one
+class LeftRightStrategy implements AcquisitionStrategy {
+    @Override
+    public boolean pickUpForks(Philosopher philosopher, Fork left, Fork right) throws InterruptedException {
+        return pickUpInOrder(philosopher, left, right);
+    }
+
+    // Gives up holding neither fork if the wait-for graph picks this philosopher as a deadlock victim
+    static boolean pickUpInOrder(Philosopher philosopher, Fork first, Fork second) throws InterruptedException {
+        if (!philosopher.acquire(first)) {
+            return false;
+        }
+        boolean acquired = false;
+        try {
+            acquired = philosopher.acquire(second);
+        } finally {
+            if (!acquired) {
+                philosopher.release(first); // Interrupted or chosen as victim while waiting for the second fork
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public void putDownForks(Philosopher philosopher, Fork left, Fork right) {
+        philosopher.release(left);
+        philosopher.release(right);
+    }
+
+    @Override
+    public boolean needsDeadlockDetection() {
+        return true;
+    }
+}
+
+// Resource hierarchy: the lower-numbered fork is always taken first. Around a table of N forks the
+// last philosopher reaches for fork 0 before fork N-1, so no cycle of waiters can ever form.
+class OrderedStrategy implements AcquisitionStrategy {
+    @Override
+    public boolean pickUpForks(Philosopher philosopher, Fork left, Fork right) throws InterruptedException {
+        if (left.getId() < right.getId()) {
+            return LeftRightStrategy.pickUpInOrder(philosopher, left, right);
+        }
+        return LeftRightStrategy.pickUpInOrder(philosopher, right, left);
+    }
+
+    @Override
+    public void putDownForks(Philosopher philosopher, Fork left, Fork right) {
+        philosopher.release(left);
+        philosopher.release(right);
+    }
+
+    @Override
+    public boolean needsDeadlockDetection() {
+        return false;
+    }
+}
+
+// Waiter (arbitrator): the table's semaphore lets at most N-1 of its philosophers reach for forks
+// at once, so the left-then-right protocol can never close a cycle around the table.
+class WaiterStrategy implements AcquisitionStrategy {
+    @Override
+    public boolean pickUpForks(Philosopher philosopher, Fork left, Fork right) throws InterruptedException {
+        Semaphore waiter = philosopher.getTable().getWaiter();
+        waiter.acquire();
+        boolean acquired = false;
+        try {
+            acquired = LeftRightStrategy.pickUpInOrder(philosopher, left, right);
+        } finally {
+            if (!acquired) {
+                waiter.release();
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public void putDownForks(Philosopher philosopher, Fork left, Fork right) {
+        philosopher.release(left);
+        philosopher.release(right);
+        philosopher.getTable().getWaiter().release();
+    }
+
+    @Override
+    public boolean needsDeadlockDetection() {
+        return false;
+    }
+}
+
+// Never holds one fork while blocked on the other: each fork is tried with a bounded wait, and if
+// the second is not free the first goes straight back. The philosopher then pauses for an
+// exponentially growing, optionally jittered time before the next attempt.
+class BackoffStrategy implements AcquisitionStrategy {
+    private final long timeoutNanos;
+    private final long minBackoffNanos;
+    private final long maxBackoffNanos;
+    private final boolean jitter;
+    private final LongAdder retries = new LongAdder();
+
+    public BackoffStrategy(long timeoutNanos, long minBackoffNanos, long maxBackoffNanos, boolean jitter) {
+        this.timeoutNanos = timeoutNanos;
+        this.minBackoffNanos = minBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+        this.jitter = jitter;
+    }
+
+    @Override
+    public boolean pickUpForks(Philosopher philosopher, Fork left, Fork right) throws InterruptedException {
+        long backoff = minBackoffNanos;
+        while (true) {
+            if (philosopher.tryAcquire(left, timeoutNanos)) {
+                boolean acquired = false;
+                try {
+                    acquired = philosopher.tryAcquire(right, timeoutNanos);
+                } finally {
+                    if (!acquired) {
+                        philosopher.release(left); // Also when interrupted while waiting for the right fork
+                    }
+                }
+                if (acquired) {
+                    return true;
+                }
+            }
+            retries.increment();
+            // Drawn from the philosopher's own stream so a run repeats from its seed
+            LockSupport.parkNanos(jitter ? philosopher.getRandom().nextLong(backoff + 1) : backoff);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            backoff = Math.min(backoff * 2, maxBackoffNanos);
+        }
+    }
+
+    @Override
+    public void putDownForks(Philosopher philosopher, Fork left, Fork right) {
+        philosopher.release(left);
+        philosopher.release(right);
+    }
+
+    @Override
+    public boolean needsDeadlockDetection() {
+        return false;
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+}
+
+// Chandy-Misra: every fork is always owned by one of its two neighbours and is either clean or
+// dirty. A hungry philosopher asks for a fork it lacks by leaving a request token on it; the owner
+// must hand over a dirty fork it is not eating with (cleaning it on the way) but keeps a clean one.
+// Forks start dirty with the lower-id neighbour, which makes the precedence graph acyclic, and
+// eating dirties both forks, which pushes precedence to the neighbours: no deadlock, no starvation.
+class ChandyMisraStrategy implements AcquisitionStrategy {
+    private static final int NOBODY = -1;
+
+    private final ConcurrentHashMap<Fork, ForkToken> tokens = new ConcurrentHashMap<>();
+
+    private static final class ForkToken {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition handedOver = lock.newCondition();
+        int owner = NOBODY;
+        boolean dirty = true;
+        boolean inUse; // The owner is eating with it
+        boolean requested; // The other neighbour holds the request token
+    }
+
+    @Override
+    public void seat(Philosopher philosopher, Fork left, Fork right) {
+        int id = philosopher.getPhilosopherId();
+        for (Fork fork : new Fork[] {left, right}) {
+            ForkToken token = tokens.computeIfAbsent(fork, f -> new ForkToken());
+            token.lock.lock();
+            try {
+                if (token.owner == NOBODY || id < token.owner) {
+                    token.owner = id;
+                }
+            } finally {
+                token.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean pickUpForks(Philosopher philosopher, Fork left, Fork right) throws InterruptedException {
+        int id = philosopher.getPhilosopherId();
+        ForkToken leftToken = tokens.get(left);
+        ForkToken rightToken = tokens.get(right);
+        do {
+            obtain(philosopher, left, leftToken, id);
+            obtain(philosopher, right, rightToken, id);
+        } while (!startEating(leftToken, rightToken, id)); // A dirty fork we already owned may have been taken meanwhile
+
+        // The physical forks are free whenever we own both tokens, so these never wait
+        philosopher.acquire(left);
+        philosopher.acquire(right);
+        return true;
+    }
+
+    private void obtain(Philosopher philosopher, Fork fork, ForkToken token, int id) throws InterruptedException {
+        token.lock.lockInterruptibly();
+        try {
+            if (token.owner == id) {
+                return;
+            }
+            if (token.inUse || !token.dirty) {
+                philosopher.waitingFor(fork);
+                do {
+                    token.requested = true;
+                    token.handedOver.await();
+                } while (token.inUse || !token.dirty);
+            }
+            token.owner = id; // Handed over by the neighbour, cleaned on the way
+            token.dirty = false;
+            token.requested = false;
+        } finally {
+            token.lock.unlock();
+        }
+    }
+
+    // Tokens are checked one at a time rather than nested so neighbours never wait on each other's locks
+    private boolean startEating(ForkToken leftToken, ForkToken rightToken, int id) {
+        if (!markInUse(leftToken, id)) {
+            return false;
+        }
+        if (!markInUse(rightToken, id)) {
+            finishWith(leftToken, false);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean markInUse(ForkToken token, int id) {
+        token.lock.lock();
+        try {
+            if (token.owner != id) {
+                return false;
+            }
+            token.inUse = true;
+            return true;
+        } finally {
+            token.lock.unlock();
+        }
+    }
+
+    private void finishWith(ForkToken token, boolean ate) {
+        token.lock.lock();
+        try {
+            token.inUse = false;
+            if (ate) {
+                token.dirty = true;
+            }
+            if (token.requested) {
+                token.handedOver.signal(); // Honour the neighbour's request token
+            }
+        } finally {
+            token.lock.unlock();
+        }
+    }
+
+    @Override
+    public void putDownForks(Philosopher philosopher, Fork left, Fork right) {
+        philosopher.release(left);
+        philosopher.release(right);
+        finishWith(tokens.get(left), true);
+        finishWith(tokens.get(right), true);
+    }
+
+    @Override
+    public boolean needsDeadlockDetection() {
+        return false;
+    }
+}
@@ -0,0 +1,1014 @@
+package diningphilosophers;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.SplittableRandom;
+
+class Philosopher implements Runnable {
+    private final int id;
+    private Fork leftFork; // Both forks and the table change only on this philosopher's thread, when it migrates
+    private Fork rightFork;
+    private Table currentTable;
+    private final AcquisitionStrategy strategy;
+    private final WaitForGraph waitForGraph; // Null unless the wait-for graph detector is active
+    private volatile boolean deadlockVictim; // Set by the DeadlockDetector while this philosopher waits
+    private volatile Migration pendingMigration; // Set by whoever evicted this philosopher
+
+    private static final class Migration {
+        final OverflowTable table;
+        final Fork leftFork;
+        final Fork rightFork;
+        final long startNanos;
+
+        Migration(OverflowTable table, Fork leftFork, Fork rightFork, long startNanos) {
+            this.table = table;
+            this.leftFork = leftFork;
+            this.rightFork = rightFork;
+            this.startNanos = startNanos;
+        }
+    }
+    private final SplittableRandom random; // This philosopher's own stream, see ForkSchedule.streamFor
+    private final PhaseDurations durations;
+
+    public Philosopher(int id, Fork leftFork, Fork rightFork, Table table, AcquisitionStrategy strategy, WaitForGraph waitForGraph,
+            SplittableRandom random, PhaseDurations durations) {
+        this.id = id;
+        this.leftFork = leftFork;
+        this.rightFork = rightFork;
+        this.currentTable = table;
+        this.strategy = strategy;
+        this.waitForGraph = waitForGraph;
+        this.random = random;
+        this.durations = durations;
+    }
+
+    public void updateTable(Table table) {
+        this.currentTable = table;
+        MealStats.seated(id, table.getTableId());
+    }
+
+    public Table getTable() {
+        return currentTable;
+    }
+
+    private void updateActivityTime() {
+        currentTable.updateLastActivityTime(); // Update last activity time for the table
+    }
+
+    private void log(EventType type) {
+        EventLog.record(id, currentTable.getTableId(), type);
+    }
+
+    private void think() throws InterruptedException {
+        log(EventType.THINKING);
+        durations.pause(durations.think(random));
+        updateActivityTime(); // Update last activity time
+    }
+
+    private void eat() throws InterruptedException {
+        log(EventType.EATING);
+        MealCompletedEvent meal = new MealCompletedEvent();
+        meal.begin();
+        long started = System.nanoTime();
+        durations.pause(durations.eat(random));
+        Latency.record(LatencyPhase.EATING, id, currentTable.getTableId(), System.nanoTime() - started);
+        meal.finish(currentTable.getTableId(), id);
+        updateActivityTime(); // Update last activity time
+    }
+
+    private void hesitate() throws InterruptedException {
+        durations.pause(durations.hesitate(random)); // Delay before picking up forks
+    }
+
+    // Takes one of this philosopher's forks, waiting for it if necessary. Returns false without the
+    // fork if a deadlock detector chose this philosopher as the victim.
+    boolean acquire(Fork fork) throws InterruptedException {
+        ForkSchedule.beforePickUp(currentTable.getTableId(), fork, id);
+        if (!fork.tryPickUp(id)) {
+            waitingFor(fork);
+            ForkWaitedEvent waited = new ForkWaitedEvent();
+            waited.begin();
+            long blockedSince = System.nanoTime();
+            boolean acquired = await(fork);
+            Latency.record(LatencyPhase.BLOCKED, id, currentTable.getTableId(), System.nanoTime() - blockedSince);
+            waited.finish(currentTable.getTableId(), fork.getId(), id, acquired);
+            if (!acquired) {
+                return false;
+            }
+        }
+        pickedUp(fork);
+        return true;
+    }
+
+    private void pickedUp(Fork fork) {
+        ForkSchedule.pickedUp(currentTable.getTableId(), fork, id);
+        ForkAcquiredEvent.emit(currentTable.getTableId(), fork.getId(), id);
+        log(fork == leftFork ? EventType.PICKED_UP_LEFT_FORK : EventType.PICKED_UP_RIGHT_FORK);
+        updateActivityTime();
+    }
+
+    private boolean await(Fork fork) throws InterruptedException {
+        if (waitForGraph != null) {
+            try {
+                if (waitForGraph.beginWait(id, fork)) { // Waiting would close a cycle
+                    currentTable.resolveDeadlock(this);
+                    return false;
+                }
+                fork.pickUp(id); // Wait for the fork to become available
+                return true;
+            } finally {
+                waitForGraph.endWait(id);
+            }
+        }
+
+        Table table = currentTable;
+        DeadlockDetector detector = table.getDeadlockDetector();
+        if (detector == null) {
+            fork.pickUp(id); // Wait for the fork to become available
+            return true;
+        }
+
+        // Wait in slices of the deadlock threshold; a whole slice without progress at the table makes
+        // this philosopher a suspect, and the detector may answer by making it the victim
+        deadlockVictim = false;
+        long seen = table.getHeartbeat();
+        while (!fork.tryPickUp(id, Table.DEADLOCK_THRESHOLD_NANOS)) {
+            if (deadlockVictim) {
+                return false;
+            }
+            long beats = table.getHeartbeat();
+            if (beats == seen) {
+                detector.reportSuspect(table, this, beats);
+            }
+            seen = beats;
+        }
+        return true;
+    }
+
+    void markDeadlockVictim() {
+        deadlockVictim = true;
+    }
+
+    // Evictions may come from the detector thread while this philosopher waits, so the move is only
+    // recorded here and carried out by the philosopher itself as soon as it has given its forks back
+    void migrateTo(OverflowTable table, Fork leftFork, Fork rightFork, long startNanos) {
+        pendingMigration = new Migration(table, leftFork, rightFork, startNanos);
+    }
+
+    // The victim gave its old forks back when it gave up, so binding the new ones is all that is left.
+    // Strategies are not re-seated: only the deadlock-prone ones evict (SimulationConfig rejects a
+    // detector for any other), and they keep no per-fork state. The time recorded runs from the
+    // eviction to this rebinding: placing the victim, and the victim noticing and letting go.
+    private void completeMigration() {
+        Migration migration = pendingMigration;
+        if (migration == null) {
+            return;
+        }
+        pendingMigration = null;
+        long nanos = System.nanoTime() - migration.startNanos;
+        PhilosopherMigratedEvent.emit(id, currentTable.getTableId(), migration.table.getTableId(), nanos);
+        leftFork = migration.leftFork;
+        rightFork = migration.rightFork;
+        currentTable = migration.table;
+        MealStats.seated(id, migration.table.getTableId());
+        migration.table.recordMigration(nanos);
+    }
+
+    // Takes one of this philosopher's forks if it becomes free within timeoutNanos
+    boolean tryAcquire(Fork fork, long timeoutNanos) throws InterruptedException {
+        ForkSchedule.beforePickUp(currentTable.getTableId(), fork, id);
+        boolean pickedUp = fork.tryPickUp(id);
+        if (!pickedUp && timeoutNanos > 0) {
+            ForkWaitedEvent waited = new ForkWaitedEvent();
+            waited.begin();
+            long blockedSince = System.nanoTime();
+            pickedUp = fork.tryPickUp(id, timeoutNanos);
+            Latency.record(LatencyPhase.BLOCKED, id, currentTable.getTableId(), System.nanoTime() - blockedSince);
+            waited.finish(currentTable.getTableId(), fork.getId(), id, pickedUp);
+        }
+        if (pickedUp) {
+            pickedUp(fork);
+        }
+        return pickedUp;
+    }
+
+    void waitingFor(Fork fork) {
+        log(fork == leftFork ? EventType.WAITING_FOR_LEFT_FORK : EventType.WAITING_FOR_RIGHT_FORK);
+    }
+
+    void release(Fork fork) {
+        fork.putDown(id);
+        log(fork == leftFork ? EventType.PUT_DOWN_LEFT_FORK : EventType.PUT_DOWN_RIGHT_FORK);
+    }
+
+    // Package-private so the benchmark module can drive the fork protocol without the sleeps
+    boolean tryToPickUpForks() throws InterruptedException {
+        completeMigration();
+        return strategy.pickUpForks(this, leftFork, rightFork);
+    }
+
+    void putDownForks() {
+        strategy.putDownForks(this, leftFork, rightFork);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                think();
+                hesitate();
+                long hungrySince = System.nanoTime();
+                MealStats.hungry(id, hungrySince);
+                boolean gotForks = tryToPickUpForks();
+                long fed = System.nanoTime();
+                MealStats.doneWaiting(id, fed);
+                if (!gotForks) {
+                    completeMigration(); // Holding no forks now, so an eviction can take effect at once
+                }
+                if (gotForks) {
+                    currentTable.recordMeal();
+                    MealStats.ate(id);
+                    Latency.record(LatencyPhase.ACQUIRE, id, currentTable.getTableId(), fed - hungrySince);
+                    eat();
+                    putDownForks();
+                }
+            }
+        } catch (InterruptedException e) {
+            log(EventType.INTERRUPTED);
+        }
+    }
+
+    public int getPhilosopherId() {
+        return id;
+    }
+
+    // Only for use on this philosopher's own thread; SplittableRandom is not thread-safe
+    SplittableRandom getRandom() {
+        return random;
+    }
+}
+
+abstract class Fork implements Owned {
+    protected final int id;
+
+    protected Fork(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public abstract boolean isAvailable();
+
+    // Philosophers blocked waiting for the fork to be put down; read for monitoring only
+    public abstract int getWaiting();
+
+    // Threads queued for the fork's lock itself, for forks that have one
+    public int getLockQueueLength() {
+        return 0;
+    }
+
+    // Takes the fork if it is free, without waiting
+    public abstract boolean tryPickUp(int philosopherId);
+
+    // Waits up to timeoutNanos for the fork to become free and takes it if it did
+    public abstract boolean tryPickUp(int philosopherId, long timeoutNanos) throws InterruptedException;
+
+    // Blocks until the fork is free and then takes it
+    public abstract void pickUp(int philosopherId) throws InterruptedException;
+
+    public abstract void putDown(int philosopherId);
+
+    @Override
+    public String toString() {
+        return "Fork " + id;
+    }
+}
+
+class LockFork extends Fork {
+    private final ReentrantLock lock;
+    private final Condition forkAvailable;
+    private boolean available = true;
+    private volatile int owner = NOBODY; // Published for the wait-for graph, written under the lock
+    private volatile int waiting; // Philosophers in forkAvailable.await, written under the lock
+
+    public LockFork(int id) {
+        this(id, new ReentrantLock());
+    }
+
+    private LockFork(int id, ReentrantLock lock) {
+        this(id, lock, lock.newCondition());
+    }
+
+    // Takes a lock the caller made, so a padded fork can be allocated after its lock
+    protected LockFork(int id, ReentrantLock lock, Condition forkAvailable) {
+        super(id);
+        this.lock = lock;
+        this.forkAvailable = forkAvailable;
+    }
+
+    @Override
+    public int getOwner() {
+        return owner;
+    }
+
+    @Override
+    public int getWaiting() {
+        return waiting;
+    }
+
+    @Override
+    public int getLockQueueLength() {
+        return lock.getQueueLength();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        lock.lock();
+        try {
+            return available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPickUp(int philosopherId) {
+        lock.lock();
+        try {
+            if (!available) {
+                return false;
+            }
+            available = false;
+            owner = philosopherId;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPickUp(int philosopherId, long timeoutNanos) throws InterruptedException {
+        if (!lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        try {
+            long remaining = timeoutNanos;
+            if (!available) {
+                waiting++;
+                try {
+                    while (!available) {
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        remaining = forkAvailable.awaitNanos(remaining);
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+            available = false;
+            owner = philosopherId;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void pickUp(int philosopherId) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (!available) {
+                waiting++;
+                try {
+                    while (!available) {
+                        forkAvailable.await(); // Wait for the fork to become available
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+            available = false;
+            owner = philosopherId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putDown(int philosopherId) {
+        lock.lock();
+        try {
+            available = true;
+            owner = NOBODY;
+            forkAvailable.signal(); // Signal the next philosopher waiting for the fork
+        } finally {
+            lock.unlock();
+        }
+    }
+}
+
+// Ownership is a single CAS-updated word holding the owner's id or FREE. A waiter spins briefly
+// and then parks; putDown unparks the longest waiter, which retries the CAS.
+class AtomicFork extends Fork {
+    private static final int FREE = NOBODY;
+    private static final int SPIN_LIMIT = 100;
+    private static final VarHandle OWNER;
+
+    static {
+        try {
+            OWNER = MethodHandles.lookup().findVarHandle(AtomicFork.class, "owner", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Thread> waiters;
+    private volatile int owner = FREE; // In the fork itself rather than an AtomicInteger, so padding can surround it
+
+    public AtomicFork(int id) {
+        this(id, new ConcurrentLinkedQueue<>());
+    }
+
+    // Takes a queue the caller made, so a padded fork can be allocated after it
+    protected AtomicFork(int id, ConcurrentLinkedQueue<Thread> waiters) {
+        super(id);
+        this.waiters = waiters;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return owner == FREE;
+    }
+
+    @Override
+    public int getOwner() {
+        return owner;
+    }
+
+    @Override
+    public int getWaiting() {
+        return waiters.size(); // Parked waiters; those still spinning are not counted
+    }
+
+    @Override
+    public boolean tryPickUp(int philosopherId) {
+        return owner == FREE && OWNER.compareAndSet(this, FREE, philosopherId);
+    }
+
+    @Override
+    public boolean tryPickUp(int philosopherId, long timeoutNanos) throws InterruptedException {
+        return acquire(philosopherId, System.nanoTime() + timeoutNanos, true);
+    }
+
+    @Override
+    public void pickUp(int philosopherId) throws InterruptedException {
+        acquire(philosopherId, 0, false);
+    }
+
+    private boolean acquire(int philosopherId, long deadline, boolean timed) throws InterruptedException {
+        for (int spins = 0; spins < SPIN_LIMIT; spins++) {
+            if (tryPickUp(philosopherId)) {
+                return true;
+            }
+            if (timed && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+
+        Thread current = Thread.currentThread();
+        waiters.add(current); // Enqueue before the final check so a concurrent putDown cannot miss us
+        try {
+            while (!tryPickUp(philosopherId)) {
+                if (timed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiters.remove(current);
+            if (owner == FREE) {
+                wakeNextWaiter(); // Pass on a wake-up we may have consumed without taking the fork
+            }
+        }
+    }
+
+    @Override
+    public void putDown(int philosopherId) {
+        owner = FREE;
+        wakeNextWaiter();
+    }
+
+    private void wakeNextWaiter() {
+        Thread next = waiters.peek();
+        if (next != null) {
+            LockSupport.unpark(next);
+        }
+    }
+}
+
+// The padded fork layout. Forks of a table are allocated back to back, and neighbouring forks are
+// written by philosophers on different cores, so without padding one philosopher's pick-up can
+// invalidate the cache line its neighbour's fork sits on. A padded fork is allocated after the
+// objects it writes through (lock and condition, or waiter queue), and its own fields are followed
+// by 128 bytes of padding: two cache lines, since adjacent-line prefetch fetches lines in pairs.
+// The next fork's state therefore starts at least 128 bytes past this one's. The padding is in the
+// object and survives GC; the order of the fork and its helpers is the allocation order, which a
+// copying collector usually, but not necessarily, keeps.
+//
+// Padding fields rather than @Contended, which the JVM ignores outside the JDK unless started with
+// -XX:-RestrictContended, and which cannot reach the lock's state inside ReentrantLock anyway.
+class PaddedLockFork extends LockFork {
+    @SuppressWarnings("unused")
+    private long p01, p02, p03, p04, p05, p06, p07, p08, p09, p10, p11, p12, p13, p14, p15, p16;
+
+    private PaddedLockFork(int id, ReentrantLock lock, Condition forkAvailable) {
+        super(id, lock, forkAvailable);
+    }
+
+    public static PaddedLockFork create(int id) {
+        ReentrantLock lock = new ReentrantLock();
+        return new PaddedLockFork(id, lock, lock.newCondition());
+    }
+}
+
+class PaddedAtomicFork extends AtomicFork {
+    @SuppressWarnings("unused")
+    private long p01, p02, p03, p04, p05, p06, p07, p08, p09, p10, p11, p12, p13, p14, p15, p16;
+
+    private PaddedAtomicFork(int id, ConcurrentLinkedQueue<Thread> waiters) {
+        super(id, waiters);
+    }
+
+    public static PaddedAtomicFork create(int id) {
+        return new PaddedAtomicFork(id, new ConcurrentLinkedQueue<>());
+    }
+}
+
+enum ForkType {
+    LOCK,
+    ATOMIC;
+
+    public static ForkType parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+
+    public Fork create(int id) {
+        return create(id, ForkLayout.COMPACT);
+    }
+
+    public Fork create(int id, ForkLayout layout) {
+        if (layout == ForkLayout.PADDED) {
+            return this == LOCK ? PaddedLockFork.create(id) : PaddedAtomicFork.create(id);
+        }
+        return this == LOCK ? new LockFork(id) : new AtomicFork(id);
+    }
+}
+
+// How forks are laid out in memory: compact (back to back) or padded (see PaddedLockFork)
+enum ForkLayout {
+    COMPACT,
+    PADDED;
+
+    public static ForkLayout parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+}
+
+class Table {
+    static final long DEADLOCK_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(190);
+
+    private final int tableId;
+    private final Philosopher[] philosophers;
+    private final Fork[] forks;
+    private final OverflowPool overflowTables;
+    private final LongAdder heartbeat = new LongAdder(); // Bumped on every philosopher activity, never blocks
+    private final LongAdder meals = new LongAdder();
+    private final LongAdder deadlocks = new LongAdder();
+    private final LongAdder evictions = new LongAdder(); // Victims an overflow table took in
+    private long lastResolvedHeartbeat = -1; // Heartbeat of the last stall the detector resolved, guarded by lock
+    private DeadlockDetector deadlockDetector; // Set before any philosopher starts, null without the heuristic
+    private final Object lock = new Object();
+    private final Semaphore waiter; // Admission control for the waiter strategy
+
+    public Table(int tableId, Philosopher[] philosophers, Fork[] forks, OverflowPool overflowTables) {
+        this(tableId, philosophers, forks, overflowTables, forks.length - 1);
+    }
+
+    public Table(int tableId, Philosopher[] philosophers, Fork[] forks, OverflowPool overflowTables, int waiterPermits) {
+        if (waiterPermits < 1 || waiterPermits >= forks.length) {
+            throw new IllegalArgumentException("Table " + tableId + " needs between 1 and " + (forks.length - 1) + " waiter permits, got " + waiterPermits);
+        }
+        this.tableId = tableId;
+        this.philosophers = philosophers;
+        this.forks = forks;
+        this.overflowTables = overflowTables;
+        this.waiter = new Semaphore(waiterPermits);
+    }
+
+    public int getTableId() {
+        return tableId;
+    }
+
+    public Semaphore getWaiter() {
+        return waiter;
+    }
+
+    public void updateLastActivityTime() {
+        heartbeat.increment(); // Striped counter: diners at the same table do not contend
+    }
+
+    public long getHeartbeat() {
+        return heartbeat.sum();
+    }
+
+    public void recordMeal() {
+        meals.increment();
+    }
+
+    public long getMeals() {
+        return meals.sum();
+    }
+
+    public long getDeadlocks() {
+        return deadlocks.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // The forks the table was laid with; an overflow table adds more as it grows
+    public Fork[] getForks() {
+        return forks.clone();
+    }
+
+    public void watchWith(DeadlockDetector deadlockDetector) {
+        this.deadlockDetector = deadlockDetector;
+    }
+
+    public DeadlockDetector getDeadlockDetector() {
+        return deadlockDetector;
+    }
+
+    // Only the detector takes the lock; philosophers bump the heartbeat without it. The suspect saw
+    // no activity at this table for a whole threshold; if the heartbeat still has not moved, the
+    // table is deadlocked and the suspect becomes the victim. Other suspects of the same stall are
+    // ignored, so one stall costs one victim.
+    public void confirmDeadlock(Philosopher suspect, long suspectHeartbeat) {
+        synchronized (lock) {
+            if (heartbeat.sum() != suspectHeartbeat || suspectHeartbeat == lastResolvedHeartbeat) {
+                return;
+            }
+            lastResolvedHeartbeat = suspectHeartbeat;
+            resolveDeadlock(suspect);
+            suspect.markDeadlockVictim();
+        }
+    }
+
+    // Moves the deadlock victim to an overflow table; overflow tables themselves have nowhere to send it
+    public void resolveDeadlock(Philosopher victim) {
+        EventLog.record(-1, tableId, EventType.DEADLOCK_DETECTED);
+        deadlocks.increment();
+        boolean evicted = overflowTables != null && moveToSixthTable(victim);  // Move one philosopher to the sixth table to resolve deadlock
+        if (evicted) {
+            evictions.increment();
+        }
+        DeadlockDetectedEvent.emit(tableId, victim.getPhilosopherId(), evicted);
+    }
+
+    // A victim every overflow table turns away stays here; it has already given its forks back
+    private boolean moveToSixthTable(Philosopher philosopher) {
+        return overflowTables.place(this, philosopher) != null;
+    }
+}
+
+// Sleeps until a waiting philosopher reports its table as a suspect, then checks only that table,
+// so healthy and idle tables cost nothing however many there are.
+class DeadlockDetector extends Thread {
+    private final BlockingQueue<Suspect> suspects = new LinkedBlockingQueue<>();
+    private final LongAdder suspectsReported = new LongAdder();
+
+    private static final class Suspect {
+        final Table table;
+        final Philosopher philosopher;
+        final long heartbeat;
+
+        Suspect(Table table, Philosopher philosopher, long heartbeat) {
+            this.table = table;
+            this.philosopher = philosopher;
+            this.heartbeat = heartbeat;
+        }
+    }
+
+    public DeadlockDetector() {
+        super("deadlock-detector");
+    }
+
+    public void reportSuspect(Table table, Philosopher philosopher, long heartbeat) {
+        suspectsReported.increment();
+        suspects.offer(new Suspect(table, philosopher, heartbeat));
+    }
+
+    public long getSuspectsReported() {
+        return suspectsReported.sum();
+    }
+
+    public int getPendingSuspects() {
+        return suspects.size();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Suspect suspect = suspects.take();
+                suspect.table.confirmDeadlock(suspect.philosopher, suspect.heartbeat);
+            }
+        } catch (InterruptedException e) {
+            System.out.println("Deadlock detector interrupted.");
+        }
+    }
+}
+
+// How philosopher loops are mapped onto threads. Virtual threads are looked up reflectively so the
+// simulation still builds and runs on Java 17; Fork only blocks through ReentrantLock/Condition and
+// Thread.sleep, so a waiting philosopher unmounts from its carrier instead of pinning it.
+enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL;
+
+    public static ExecutionMode parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+
+    public ThreadFactory threadFactory() {
+        if (this == PLATFORM) {
+            return new ThreadFactory() {
+                private int next = 0;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "philosopher-" + next++);
+                }
+            };
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "philosopher-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or newer (running on " + System.getProperty("java.version") + ")", e);
+        }
+    }
+
+    // False before Java 21, and on 19 and 20 without --enable-preview, where Thread.ofVirtual throws
+    static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual").invoke(null);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
+
+public class DiningPhilosophersSimulation {
+    public static void main(String[] args) throws IOException {
+        SimulationConfig config;
+        try {
+            config = SimulationConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(SimulationConfig.usage());
+            return;
+        }
+
+        ExecutionMode executionMode = config.getExecutionMode();
+        EventLog.install(EventLog.forMode(config.getLogMode(), executionMode == ExecutionMode.VIRTUAL));
+
+        if (config.getEngine().equals("work-stealing")) {
+            runWorkStealing(config);
+            return;
+        }
+        if (config.getEngine().equals("discrete-event")) {
+            runDiscreteEvent(config);
+            return;
+        }
+        ThreadFactory philosopherThreadFactory = executionMode.threadFactory();
+        AcquisitionStrategy strategy = AcquisitionStrategy.create(config);
+        ScheduleReplay replay = config.getReplayPath() == null ? null : ScheduleReplay.load(config.getReplayPath());
+        long seed = replay == null ? config.getSeed() : replay.getSeed(); // A replay only reproduces with the recorded seed
+        ScheduleRecorder recorder = config.getRecordPath() == null ? null : new ScheduleRecorder(seed);
+        ForkSchedule.install(recorder, replay);
+        int numberOfTables = config.getTables();
+        int numberOfPhilosophersPerTable = config.getSeatsPerTable();
+        String detector = config.getDeadlockDetector(strategy);
+        WaitForGraph waitForGraph = detector.equals("graph") ? new WaitForGraph(numberOfTables * numberOfPhilosophersPerTable) : null;
+        PhaseDurations durations = PhaseDurations.from(config);
+        PhilosopherStats stats = new PhilosopherStats(numberOfTables * numberOfPhilosophersPerTable, config.getStarvationThresholdNanos());
+        MealStats.install(stats);
+        boolean reportLatency = !config.getLatencyDetail().equals("off");
+        // The exporter's fork wait histograms come from the latency recorder, so it records even if nothing is
+        // printed; at global detail that is three histograms per table
+        LatencyRecorder latency = LatencyRecorder.forDetail(!reportLatency && config.getMetricsPort() > 0 ? "global" : config.getLatencyDetail(),
+                numberOfTables + config.getOverflowTables(), numberOfTables * numberOfPhilosophersPerTable);
+        Latency.install(latency);
+        Table[] tables = new Table[numberOfTables];
+        OverflowPool overflowTables = new OverflowPool(numberOfTables + 1, config.getOverflowTables(), config.getOverflowPlacement(), config);
+
+        Thread[] philosopherThreads = new Thread[numberOfTables * numberOfPhilosophersPerTable];
+
+        for (int tableId = 1; tableId <= numberOfTables; tableId++) {
+            Fork[] forks = new Fork[numberOfPhilosophersPerTable];
+            Philosopher[] philosophers = new Philosopher[numberOfPhilosophersPerTable];
+
+            for (int i = 0; i < numberOfPhilosophersPerTable; i++) {
+                forks[i] = config.getForkType().create(i, config.getForkLayout());
+            }
+
+            for (int i = 0; i < numberOfPhilosophersPerTable; i++) {
+                Fork leftFork = forks[i];
+                Fork rightFork = forks[(i + 1) % numberOfPhilosophersPerTable];
+                int id = i + (tableId - 1) * numberOfPhilosophersPerTable;
+                philosophers[i] = new Philosopher(id, leftFork, rightFork, null, strategy, waitForGraph, ForkSchedule.streamFor(seed, id),
+                        durations);
+                philosopherThreads[(tableId - 1) * numberOfPhilosophersPerTable + i] = philosopherThreadFactory.newThread(philosophers[i]);
+            }
+            tables[tableId - 1] = new Table(tableId, philosophers, forks, overflowTables, config.getWaiterPermits(tableId, numberOfPhilosophersPerTable));
+
+            for (int i = 0; i < numberOfPhilosophersPerTable; i++) {
+                philosophers[i].updateTable(tables[tableId - 1]);
+                strategy.seat(philosophers[i], forks[i], forks[(i + 1) % numberOfPhilosophersPerTable]);
+            }
+        }
+
+        // Only the inactivity heuristic needs a detector thread; the wait-for graph is checked by each
+        // philosopher as it starts to wait, and strategies that cannot deadlock need neither
+        DeadlockDetector deadlockDetector = null;
+        if (detector.equals("heuristic")) {
+            deadlockDetector = new DeadlockDetector();
+            for (Table table : tables) {
+                table.watchWith(deadlockDetector);
+            }
+            overflowTables.watchWith(deadlockDetector);
+            deadlockDetector.start();
+        }
+
+        SimulationMBeans mbeans = null;
+        if (config.isJmx()) {
+            mbeans = new SimulationMBeans();
+            mbeans.register(tables, overflowTables, deadlockDetector, waitForGraph);
+        }
+        MetricsExporter exporter = null;
+        if (config.getMetricsPort() > 0) {
+            exporter = new MetricsExporter(config.getMetricsPort(), tables, overflowTables, deadlockDetector, waitForGraph, stats, latency);
+            exporter.start();
+            System.out.println("Metrics at http://127.0.0.1:" + exporter.getPort() + "/metrics");
+        }
+
+        for (Thread philosopherThread : philosopherThreads) {
+            philosopherThread.start();
+        }
+        Thread statsReporter = config.getStatsIntervalNanos() > 0 ? stats.startReporter(config.getStatsIntervalNanos()) : null;
+        Thread latencyReporter = reportLatency && config.getLatencyIntervalNanos() > 0
+                ? latency.startReporter(config.getLatencyIntervalNanos()) : null;
+
+        try {
+            Thread.sleep(config.getDurationMillis()); // Let the simulation run for the configured duration
+        } catch (InterruptedException e) {
+            System.out.println("Main thread interrupted.");
+        }
+
+        System.out.println("Interrupting all threads...");
+        long stoppedAt = System.nanoTime(); // Philosophers still waiting now were cut off, not starved by what follows
+        if (statsReporter != null) {
+            statsReporter.interrupt();
+        }
+        if (latencyReporter != null) {
+            latencyReporter.interrupt();
+        }
+
+        for (Thread philosopherThread : philosopherThreads) {
+            philosopherThread.interrupt();
+        }
+
+        if (deadlockDetector != null) {
+            deadlockDetector.interrupt();
+        }
+
+        try {
+            for (Thread philosopherThread : philosopherThreads) {
+                philosopherThread.join();
+            }
+            if (deadlockDetector != null) {
+                deadlockDetector.join();
+            }
+        } catch (InterruptedException e) {
+            System.out.println("Simulation interrupted.");
+        }
+
+        EventLog.close();
+        if (mbeans != null) {
+            mbeans.unregister();
+        }
+        if (exporter != null) {
+            exporter.stop();
+        }
+        ForkSchedule.install(null, null);
+        if (recorder != null) {
+            recorder.write(config.getRecordPath());
+            System.out.println("Fork schedule recorded to " + config.getRecordPath());
+        }
+        if (replay != null && replay.getDivergedForks() > 0) {
+            System.out.printf("Replay diverged from the recording at %d forks%n", replay.getDivergedForks());
+        }
+        for (OverflowTable table : overflowTables.getTables()) {
+            long migrations = table.getMigrations();
+            System.out.printf("Overflow table %d: %d seated, %d seats allocated, %d turned away, %d seat claim retries (max %d)%s;"
+                    + " %d migrations, mean %.1f us%n", table.getTableId(), table.getSeated(), table.getCapacity(), table.getTurnedAway(),
+                    table.getClaimRetries(), table.getMaxCapacity(), table.isFull() ? ", full" : "", migrations,
+                    migrations == 0 ? 0.0 : table.getMigrationNanos() / 1000.0 / migrations);
+        }
+        if (overflowTables.getStranded() > 0) {
+            System.out.printf("Victims kept at their own table, every overflow table full: %d%n", overflowTables.getStranded());
+        }
+        if (overflowTables.getCreationRaces() > 0) {
+            System.out.printf("Overflow tables built twice by racing evictions, one copy dropped: %d%n", overflowTables.getCreationRaces());
+        }
+        if (waitForGraph != null) {
+            long detections = waitForGraph.getDetections();
+            System.out.printf("Deadlocks detected by the wait-for graph: %d (mean detection %.1f us)%n", detections,
+                    detections == 0 ? 0.0 : waitForGraph.getDetectionNanos() / 1000.0 / detections);
+        }
+        System.out.print(stats.snapshot(stoppedAt).format());
+        if (reportLatency) {
+            System.out.print(latency.format());
+        }
+        System.out.println("Seed: " + seed);
+        System.out.println("Simulation finished.");
+    }
+
+    private static void runDiscreteEvent(SimulationConfig config) {
+        DiscreteEventEngine engine = new DiscreteEventEngine(config);
+        long started = System.nanoTime();
+        long meals = engine.run();
+        long wallMillis = (System.nanoTime() - started) / 1_000_000;
+        EventLog.close();
+        System.out.printf("Simulated %.1f s in %d ms: %d meals, %d events (seed %d)%n", config.getDurationMillis() / 1000.0, wallMillis,
+                meals, engine.getEvents(), config.getSeed());
+        System.out.print(engine.getFairness().format());
+        if (engine.getLatency() != null) {
+            System.out.print(engine.getLatency().format());
+        }
+        if (engine.getDeadlockDetections() > 0) {
+            System.out.printf("Deadlocks detected by the wait-for graph: %d%n", engine.getDeadlockDetections());
+        }
+        System.out.println("Simulation finished.");
+    }
+
+    private static void runWorkStealing(SimulationConfig config) {
+        WorkStealingEngine engine = new WorkStealingEngine(config);
+        long meals = 0;
+        try {
+            meals = engine.run();
+        } catch (InterruptedException e) {
+            System.out.println("Main thread interrupted.");
+        }
+        EventLog.close();
+        System.out.printf("Meals: %d (%.0f per second), seed %d%n", meals, meals * 1000.0 / Math.max(1, config.getDurationMillis()),
+                config.getSeed());
+        System.out.print(engine.getFairness().format());
+        if (engine.getLatency() != null) {
+            System.out.print(engine.getLatency().format());
+        }
+        if (engine.getDeadlockDetections() > 0) {
+            System.out.printf("Deadlocks detected by the wait-for graph: %d%n", engine.getDeadlockDetections());
+        }
+        System.out.println("Simulation finished.");
+    }
+}
@@ -0,0 +1,176 @@
+package diningphilosophers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+// Runs SteppedPhilosophers on one thread against a virtual clock: nothing sleeps, the clock jumps
+// from one event to the next, so simulated minutes take as long as the events in them do.
+//
+// The event calendar is a calendar queue: one FIFO bucket per virtual millisecond for the next
+// SLOTS milliseconds, and a priority queue ordered by (time, sequence) for anything further out.
+// A far event was scheduled at least SLOTS milliseconds before it is due, so before anything in
+// its bucket, and runs ahead of it. Events at the same time therefore run in the order they were
+// scheduled, and every philosopher draws from its own stream derived from the seed, so a run is
+// fully determined by its seed and settings.
+class DiscreteEventEngine implements PhaseScheduler {
+    private static final int SLOTS = 1024;
+
+    private static final class FarEvent implements Comparable<FarEvent> {
+        final long time;
+        final long sequence;
+        final SteppedPhilosopher philosopher;
+
+        FarEvent(long time, long sequence, SteppedPhilosopher philosopher) {
+            this.time = time;
+            this.sequence = sequence;
+            this.philosopher = philosopher;
+        }
+
+        @Override
+        public int compareTo(FarEvent other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final SimulationConfig config;
+    private final ArrayDeque<SteppedPhilosopher>[] buckets;
+    private final PriorityQueue<FarEvent> farEvents = new PriorityQueue<>();
+    private final WaitForGraph waitForGraph;
+    private final List<SteppedPhilosopher> philosophers = new ArrayList<>();
+    private final PhilosopherStats stats;
+    private final LatencyRecorder latency; // Null unless latency recording is on
+    private long now; // Virtual milliseconds
+    private long sequence;
+    private long events;
+
+    public DiscreteEventEngine(SimulationConfig config) {
+        this.config = config;
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        ArrayDeque<SteppedPhilosopher>[] slots = new ArrayDeque[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.buckets = slots;
+        boolean graph = config.getDeadlockDetector(AcquisitionStrategy.create(config)).equals("graph");
+        this.waitForGraph = graph ? new WaitForGraph(config.getTables() * config.getSeatsPerTable()) : null;
+        this.stats = new PhilosopherStats(config.getTables() * config.getSeatsPerTable(), config.getStarvationThresholdNanos());
+        this.latency = LatencyRecorder.forDetail(config.getLatencyDetail(), config.getTables(), config.getTables() * config.getSeatsPerTable());
+    }
+
+    // Simulates the configured duration of virtual time and returns the number of meals eaten
+    public long run() {
+        int seats = config.getSeatsPerTable();
+        boolean ordered = config.getStrategy().equals("ordered");
+        PhaseDurations durations = PhaseDurations.from(config);
+        MealStats.install(stats);
+        Latency.install(latency);
+        for (int tableId = 1; tableId <= config.getTables(); tableId++) {
+            SteppedFork[] forks = new SteppedFork[seats];
+            for (int i = 0; i < seats; i++) {
+                forks[i] = new SteppedFork(i, this);
+            }
+            for (int i = 0; i < seats; i++) {
+                SteppedFork left = forks[i];
+                SteppedFork right = forks[(i + 1) % seats];
+                boolean leftFirst = !ordered || left.getId() < right.getId();
+                SteppedPhilosopher philosopher = new SteppedPhilosopher(i + (tableId - 1) * seats, tableId, left, right, leftFirst,
+                        this, waitForGraph, ForkSchedule.streamFor(config.getSeed(), i + (tableId - 1) * seats), durations);
+                philosophers.add(philosopher);
+                after(0, philosopher);
+            }
+        }
+
+        long end = config.getDurationMillis();
+        long reportEvery = TimeUnit.NANOSECONDS.toMillis(config.getStatsIntervalNanos());
+        long latencyEvery = latency == null ? 0 : TimeUnit.NANOSECONDS.toMillis(config.getLatencyIntervalNanos());
+        while (now < end) {
+            if (reportEvery > 0 && now > 0 && now % reportEvery == 0) {
+                System.out.print(stats.snapshot(nowNanos()).format());
+            }
+            if (latencyEvery > 0 && now > 0 && now % latencyEvery == 0) {
+                System.out.print(latency.format());
+            }
+            while (!farEvents.isEmpty() && farEvents.peek().time == now) {
+                events++;
+                farEvents.poll().philosopher.run();
+            }
+            // Steps scheduled for now by the steps below join the end of this bucket
+            ArrayDeque<SteppedPhilosopher> bucket = buckets[(int) (now % SLOTS)];
+            for (SteppedPhilosopher philosopher; (philosopher = bucket.poll()) != null; ) {
+                events++;
+                philosopher.run();
+            }
+            now = next(end, reportEvery, latencyEvery);
+        }
+
+        long meals = 0;
+        for (SteppedPhilosopher philosopher : philosophers) {
+            meals += philosopher.getMeals();
+        }
+        return meals;
+    }
+
+    // The next millisecond with something in it: an event, a report or the end of the run. Buckets
+    // only hold events less than SLOTS ahead, so no further than that needs to be searched.
+    private long next(long end, long reportEvery, long latencyEvery) {
+        long limit = Math.min(end, now + SLOTS);
+        if (!farEvents.isEmpty()) {
+            limit = Math.min(limit, farEvents.peek().time);
+        }
+        if (reportEvery > 0) {
+            limit = Math.min(limit, (now / reportEvery + 1) * reportEvery);
+        }
+        if (latencyEvery > 0) {
+            limit = Math.min(limit, (now / latencyEvery + 1) * latencyEvery);
+        }
+        long time = now + 1;
+        while (time < limit && buckets[(int) (time % SLOTS)].isEmpty()) {
+            time++;
+        }
+        return time;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public FairnessSnapshot getFairness() {
+        return stats.snapshot(nowNanos());
+    }
+
+    public LatencyRecorder getLatency() {
+        return latency;
+    }
+
+    public long getDeadlockDetections() {
+        return waitForGraph == null ? 0 : waitForGraph.getDetections();
+    }
+
+    @Override
+    public void after(long millis, SteppedPhilosopher philosopher) {
+        if (millis < SLOTS) {
+            buckets[(int) ((now + millis) % SLOTS)].add(philosopher);
+        } else {
+            farEvents.add(new FarEvent(now + millis, sequence++, philosopher));
+        }
+    }
+
+    @Override
+    public void resume(SteppedPhilosopher philosopher) {
+        after(0, philosopher);
+    }
+
+    @Override
+    public long nowNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(now);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return now < config.getDurationMillis();
+    }
+}
@@ -0,0 +1,248 @@
+package diningphilosophers;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+enum EventType {
+    THINKING("Philosopher ", " is thinking."),
+    EATING("Philosopher ", " is eating."),
+    WAITING_FOR_LEFT_FORK("Philosopher ", " is waiting for left fork."),
+    PICKED_UP_LEFT_FORK("Philosopher ", " picked up left fork."),
+    WAITING_FOR_RIGHT_FORK("Philosopher ", " is waiting for right fork."),
+    PICKED_UP_RIGHT_FORK("Philosopher ", " picked up right fork."),
+    PUT_DOWN_LEFT_FORK("Philosopher ", " put down left fork."),
+    PUT_DOWN_RIGHT_FORK("Philosopher ", " put down right fork."),
+    INTERRUPTED("Philosopher ", " was interrupted."),
+    MOVED_TO_SIXTH_TABLE("Philosopher ", " moved to the sixth table.================================================================================================================================================"),
+    OVERFLOW_TABLE_FULL("Sixth table is full, philosopher ", " stays at its table."),
+    DEADLOCK_DETECTED("Deadlock detected at Table ", ". Moving philosopher to the sixth table.");
+
+    private static final EventType[] VALUES = values();
+
+    private final String prefix;
+    private final String suffix;
+
+    EventType(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    static EventType of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    void appendTo(StringBuilder out, int philosopherId, int tableId) {
+        out.append(prefix).append(this == DEADLOCK_DETECTED ? tableId : philosopherId).append(suffix).append('\n');
+    }
+}
+
+interface EventSink {
+    void record(int philosopherId, int tableId, EventType type);
+
+    void close();
+}
+
+// Benchmark mode: events are discarded without touching the clock or any shared state
+class SilentEventSink implements EventSink {
+    @Override
+    public void record(int philosopherId, int tableId, EventType type) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
+
+// The old behaviour: every event is formatted and printed by the philosopher itself
+class ConsoleEventSink implements EventSink {
+    @Override
+    public void record(int philosopherId, int tableId, EventType type) {
+        StringBuilder line = new StringBuilder(64);
+        type.appendTo(line, philosopherId, tableId);
+        System.out.print(line);
+    }
+
+    @Override
+    public void close() {
+        System.out.flush();
+    }
+}
+
+// Ring of fixed-size binary records; producers claim slots with a CAS and the drainer empties it
+class EventRing {
+    private static final int LONGS_PER_RECORD = 3; // ids, event type, nanoTime
+
+    private final long[] records;
+    private final AtomicLongArray published; // Slot n holds sequence + 1 once its record is readable
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Next record the drainer reads
+    private final AtomicLong tail = new AtomicLong(); // Next record a producer claims
+    private final AtomicLong dropped = new AtomicLong();
+
+    public EventRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.records = new long[capacity * LONGS_PER_RECORD];
+        this.published = new AtomicLongArray(capacity);
+    }
+
+    public void offer(int philosopherId, int tableId, EventType type, long nanoTime) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head.get() >= capacity) {
+                dropped.incrementAndGet(); // Never block a philosopher on a slow console
+                return;
+            }
+        } while (!tail.compareAndSet(t, t + 1)); // Uncontended when the ring belongs to one thread
+
+        int slot = (int) (t & mask);
+        int i = slot * LONGS_PER_RECORD;
+        records[i] = ((long) philosopherId << 32) | (tableId & 0xFFFFFFFFL);
+        records[i + 1] = type.ordinal();
+        records[i + 2] = nanoTime;
+        published.lazySet(slot, t + 1); // Publish the record to the drainer
+    }
+
+    public int drainTo(StringBuilder out) {
+        long h = head.get();
+        long start = h;
+        while (published.get((int) (h & mask)) == h + 1) {
+            int i = (int) (h & mask) * LONGS_PER_RECORD;
+            long ids = records[i];
+            EventType.of((int) records[i + 1]).appendTo(out, (int) (ids >>> 32), (int) ids);
+            h++;
+        }
+        head.lazySet(h);
+        return (int) (h - start);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
+
+// Philosophers write into their own ring; a background drainer formats and prints them in batches.
+// With virtual threads a ring per thread would cost more than the philosopher itself, so the rings
+// are instead a fixed set of stripes shared by philosopher id.
+class AsyncEventSink implements EventSink {
+    private static final long IDLE_PARK_NANOS = 1_000_000L; // 1 ms between empty drain passes
+    private static final int SHARED_STRIPES = 64;
+
+    private final int ringCapacity;
+    private final CopyOnWriteArrayList<EventRing> rings = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<EventRing> localRing;
+    private final EventRing[] stripes;
+    private final StringBuilder batch = new StringBuilder(1 << 16);
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public AsyncEventSink(int ringCapacity, boolean perThreadRings) {
+        this.ringCapacity = ringCapacity;
+        if (perThreadRings) {
+            this.localRing = ThreadLocal.withInitial(this::newRing);
+            this.stripes = null;
+        } else {
+            this.localRing = null;
+            this.stripes = new EventRing[SHARED_STRIPES];
+            for (int i = 0; i < SHARED_STRIPES; i++) {
+                stripes[i] = newRing();
+            }
+        }
+        this.drainer = new Thread(this::drainLoop, "event-log-drainer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    private EventRing newRing() {
+        EventRing ring = new EventRing(ringCapacity);
+        rings.add(ring);
+        return ring;
+    }
+
+    @Override
+    public void record(int philosopherId, int tableId, EventType type) {
+        EventRing ring = stripes == null ? localRing.get() : stripes[philosopherId & (SHARED_STRIPES - 1)];
+        ring.offer(philosopherId, tableId, type, System.nanoTime());
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drainOnce() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private int drainOnce() {
+        int drained = 0;
+        for (EventRing ring : rings) {
+            drained += ring.drainTo(batch);
+        }
+        if (drained > 0) {
+            System.out.append(batch); // One stdout lock acquisition per batch
+            System.out.flush();
+            batch.setLength(0);
+        }
+        return drained;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainOnce();
+
+        long dropped = 0;
+        for (EventRing ring : rings) {
+            dropped += ring.getDropped();
+        }
+        if (dropped > 0) {
+            System.out.println("Event log dropped " + dropped + " events (ring buffers full).");
+        }
+    }
+}
+
+class EventLog {
+    private static final int DEFAULT_RING_CAPACITY = 4096;
+
+    private static volatile EventSink sink = new ConsoleEventSink();
+
+    private EventLog() {
+    }
+
+    public static EventSink forMode(String mode, boolean virtualThreads) {
+        switch (mode) {
+            case "async":
+                return new AsyncEventSink(DEFAULT_RING_CAPACITY, !virtualThreads);
+            case "console":
+                return new ConsoleEventSink();
+            case "silent":
+                return new SilentEventSink();
+            default:
+                throw new IllegalArgumentException("Unknown log mode: " + mode + " (expected async, console or silent)");
+        }
+    }
+
+    public static void install(EventSink newSink) {
+        sink = newSink;
+    }
+
+    public static void record(int philosopherId, int tableId, EventType type) {
+        sink.record(philosopherId, tableId, type);
+    }
+
+    public static void close() {
+        sink.close();
+    }
+}
@@ -0,0 +1,157 @@
+package diningphilosophers;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Java Flight Recorder events for the threaded engine, so fork contention can be lined up with GC
+// pauses and safepoints in JDK Mission Control. With no recording running, an event costs an
+// allocation the JIT removes and one isEnabled/shouldCommit check. Stack traces are off: these fire
+// on every pick-up, and the thread already says which philosopher it was.
+//
+//   java -XX:StartFlightRecording=filename=run.jfr ... DiningPhilosophersSimulation
+//   jfr print --events diningphilosophers.ForkWaited run.jfr
+
+@Name("diningphilosophers.ForkAcquired")
+@Label("Fork Acquired")
+@Category("Dining Philosophers")
+@Description("A philosopher picked up a fork")
+@StackTrace(false)
+class ForkAcquiredEvent extends Event {
+    @Label("Table")
+    int table;
+
+    @Label("Fork")
+    int fork;
+
+    @Label("Philosopher")
+    int philosopher;
+
+    static void emit(int table, int fork, int philosopher) {
+        ForkAcquiredEvent event = new ForkAcquiredEvent();
+        if (event.isEnabled()) {
+            event.table = table;
+            event.fork = fork;
+            event.philosopher = philosopher;
+            event.commit();
+        }
+    }
+}
+
+// Spans the blocking part of a pick-up, from the failed first try until the fork was taken or the
+// wait was given up
+@Name("diningphilosophers.ForkWaited")
+@Label("Fork Waited")
+@Category("Dining Philosophers")
+@Description("A philosopher blocked waiting for a fork")
+@StackTrace(false)
+class ForkWaitedEvent extends Event {
+    @Label("Table")
+    int table;
+
+    @Label("Fork")
+    int fork;
+
+    @Label("Philosopher")
+    int philosopher;
+
+    @Label("Acquired")
+    @Description("False if the wait timed out or the philosopher was chosen as a deadlock victim")
+    boolean acquired;
+
+    void finish(int table, int fork, int philosopher, boolean acquired) {
+        end();
+        if (shouldCommit()) {
+            this.table = table;
+            this.fork = fork;
+            this.philosopher = philosopher;
+            this.acquired = acquired;
+            commit();
+        }
+    }
+}
+
+// Spans the meal itself
+@Name("diningphilosophers.MealCompleted")
+@Label("Meal Completed")
+@Category("Dining Philosophers")
+@Description("A philosopher finished eating")
+@StackTrace(false)
+class MealCompletedEvent extends Event {
+    @Label("Table")
+    int table;
+
+    @Label("Philosopher")
+    int philosopher;
+
+    void finish(int table, int philosopher) {
+        end();
+        if (shouldCommit()) {
+            this.table = table;
+            this.philosopher = philosopher;
+            commit();
+        }
+    }
+}
+
+@Name("diningphilosophers.DeadlockDetected")
+@Label("Deadlock Detected")
+@Category("Dining Philosophers")
+@Description("A detector found a table deadlocked and chose a victim")
+class DeadlockDetectedEvent extends Event {
+    @Label("Table")
+    int table;
+
+    @Label("Victim")
+    int victim;
+
+    @Label("Evicted")
+    @Description("Whether an overflow table took the victim in")
+    boolean evicted;
+
+    static void emit(int table, int victim, boolean evicted) {
+        DeadlockDetectedEvent event = new DeadlockDetectedEvent();
+        if (event.isEnabled()) {
+            event.table = table;
+            event.victim = victim;
+            event.evicted = evicted;
+            event.commit();
+        }
+    }
+}
+
+@Name("diningphilosophers.PhilosopherMigrated")
+@Label("Philosopher Migrated")
+@Category("Dining Philosophers")
+@Description("A deadlock victim switched to the forks of its overflow table")
+@StackTrace(false)
+class PhilosopherMigratedEvent extends Event {
+    @Label("Philosopher")
+    int philosopher;
+
+    @Label("From Table")
+    int fromTable;
+
+    @Label("To Table")
+    int toTable;
+
+    @Label("Migration Time")
+    @Description("From the eviction to the victim switching to its new forks")
+    @Timespan(Timespan.NANOSECONDS)
+    long migrationTime;
+
+    static void emit(int philosopher, int fromTable, int toTable, long migrationNanos) {
+        PhilosopherMigratedEvent event = new PhilosopherMigratedEvent();
+        if (event.isEnabled()) {
+            event.philosopher = philosopher;
+            event.fromTable = fromTable;
+            event.toTable = toTable;
+            event.migrationTime = migrationNanos;
+            event.commit();
+        }
+    }
+}
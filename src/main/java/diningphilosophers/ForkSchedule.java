@@ -0,0 +1,203 @@
+package diningphilosophers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Seeded randomness and the record/replay of who got each fork in which order. With every
+// philosopher drawing its phase durations from its own stream, the order in which philosophers
+// took each fork is what is left of a threaded run's nondeterminism; replaying that order with the
+// same seed reproduces the run closely enough to profile a slow one again.
+//
+// A schedule file starts with "# seed N" and has one line per fork: table id, fork id, then the
+// ids of the philosophers that picked it up, in order.
+//
+// Like EventLog, a static facade: philosophers report every pick-up here, and it costs one volatile
+// read each unless a recorder or a replay is installed.
+final class ForkSchedule {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static volatile ScheduleRecorder recorder;
+    private static volatile ScheduleReplay replay;
+
+    private ForkSchedule() {
+    }
+
+    static void install(ScheduleRecorder newRecorder, ScheduleReplay newReplay) {
+        recorder = newRecorder;
+        replay = newReplay;
+    }
+
+    static void beforePickUp(int tableId, Fork fork, int philosopherId) throws InterruptedException {
+        ScheduleReplay current = replay;
+        if (current != null) {
+            current.awaitTurn(tableId, fork, philosopherId);
+        }
+    }
+
+    static void pickedUp(int tableId, Fork fork, int philosopherId) {
+        ScheduleRecorder currentRecorder = recorder;
+        if (currentRecorder != null) {
+            currentRecorder.pickedUp(tableId, fork, philosopherId);
+        }
+        ScheduleReplay currentReplay = replay;
+        if (currentReplay != null) {
+            currentReplay.pickedUp(tableId, fork);
+        }
+    }
+
+    // The philosopher's own stream, derived from the global seed and its id alone, so it does not
+    // depend on creation order or on which thread runs the philosopher
+    static SplittableRandom streamFor(long seed, int philosopherId) {
+        return new SplittableRandom(seed * GOLDEN_GAMMA + philosopherId).split();
+    }
+
+    // Forks are numbered per table, so a fork is identified by both
+    static long key(int tableId, int forkId) {
+        return ((long) tableId << 32) | (forkId & 0xFFFFFFFFL);
+    }
+}
+
+// Appends each pick-up to its fork's list. Only the philosopher holding the fork appends, and the
+// fork's own hand-off orders consecutive holders, so a list needs no lock of its own.
+class ScheduleRecorder {
+    private final long seed;
+    private final ConcurrentHashMap<Long, Turns> forks = new ConcurrentHashMap<>();
+
+    private static final class Turns {
+        int[] philosophers = new int[64];
+        int size;
+
+        void add(int philosopherId) {
+            if (size == philosophers.length) {
+                philosophers = Arrays.copyOf(philosophers, size * 2);
+            }
+            philosophers[size++] = philosopherId;
+        }
+    }
+
+    public ScheduleRecorder(long seed) {
+        this.seed = seed;
+    }
+
+    public void pickedUp(int tableId, Fork fork, int philosopherId) {
+        forks.computeIfAbsent(ForkSchedule.key(tableId, fork.getId()), k -> new Turns()).add(philosopherId);
+    }
+
+    // Called once every philosopher has stopped
+    public void write(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(path)))) {
+            out.println("# seed " + seed);
+            for (Map.Entry<Long, Turns> fork : new TreeMap<>(forks).entrySet()) {
+                out.print((fork.getKey() >>> 32) + " " + (int) (long) fork.getKey());
+                Turns turns = fork.getValue();
+                for (int i = 0; i < turns.size; i++) {
+                    out.print(" " + turns.philosophers[i]);
+                }
+                out.println();
+            }
+        }
+    }
+}
+
+// Holds each philosopher back until it is its turn at the fork, as recorded. A philosopher that
+// has waited TURN_TIMEOUT for a turn that does not come means the run has diverged from the
+// recording (a deadlock victim chosen differently, say); that fork then runs free.
+class ScheduleReplay {
+    private static final long TURN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final long seed;
+    private final Map<Long, Turns> forks;
+    private final AtomicInteger divergedForks = new AtomicInteger();
+
+    private static final class Turns {
+        final int[] philosophers;
+        final AtomicInteger next = new AtomicInteger();
+        volatile boolean diverged;
+
+        Turns(int[] philosophers) {
+            this.philosophers = philosophers;
+        }
+    }
+
+    private ScheduleReplay(long seed, Map<Long, Turns> forks) {
+        this.seed = seed;
+        this.forks = forks;
+    }
+
+    public static ScheduleReplay load(String path) throws IOException {
+        long seed = 0;
+        Map<Long, Turns> forks = new ConcurrentHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.startsWith("# seed ")) {
+                    seed = Long.parseLong(line.substring("# seed ".length()).trim());
+                    continue;
+                }
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.trim().split("\\s+");
+                int[] philosophers = new int[fields.length - 2];
+                for (int i = 0; i < philosophers.length; i++) {
+                    philosophers[i] = Integer.parseInt(fields[i + 2]);
+                }
+                forks.put(ForkSchedule.key(Integer.parseInt(fields[0]), Integer.parseInt(fields[1])), new Turns(philosophers));
+            }
+        }
+        return new ScheduleReplay(seed, forks);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getDivergedForks() {
+        return divergedForks.get();
+    }
+
+    public void awaitTurn(int tableId, Fork fork, int philosopherId) throws InterruptedException {
+        Turns turns = forks.get(ForkSchedule.key(tableId, fork.getId()));
+        if (turns == null || turns.diverged) {
+            return;
+        }
+        long deadline = System.nanoTime() + TURN_TIMEOUT_NANOS;
+        while (true) {
+            int next = turns.next.get();
+            if (next >= turns.philosophers.length || turns.philosophers[next] == philosopherId || turns.diverged) {
+                return; // Our turn, or past the end of the recording
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                synchronized (turns) {
+                    if (!turns.diverged) {
+                        turns.diverged = true;
+                        divergedForks.incrementAndGet();
+                    }
+                }
+                return;
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public void pickedUp(int tableId, Fork fork) {
+        Turns turns = forks.get(ForkSchedule.key(tableId, fork.getId()));
+        if (turns != null) {
+            turns.next.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package diningphilosophers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+enum LatencyPhase {
+    ACQUIRE("hungry to both forks"),
+    BLOCKED("blocked on a fork"),
+    EATING("eating");
+
+    private static final LatencyPhase[] VALUES = values();
+
+    final String description;
+
+    LatencyPhase(String description) {
+        this.description = description;
+    }
+
+    static int count() {
+        return VALUES.length;
+    }
+
+    static LatencyPhase of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
+
+// Where philosophers report how long each phase took. Like EventLog, a static facade that costs one
+// volatile read when no LatencyRecorder is installed. Times come from the caller, so the
+// discrete-event engine records virtual time.
+final class Latency {
+    private static volatile LatencyRecorder recorder;
+
+    private Latency() {
+    }
+
+    static void install(LatencyRecorder newRecorder) {
+        recorder = newRecorder;
+    }
+
+    static void record(LatencyPhase phase, int philosopherId, int tableId, long nanos) {
+        LatencyRecorder current = recorder;
+        if (current != null) {
+            current.record(phase, philosopherId, tableId, nanos);
+        }
+    }
+}
+
+// A log-linear histogram in the style of HdrHistogram: values below SUB_BUCKETS are counted
+// exactly, and each power of two above that is split into SUB_BUCKETS / 2 linear steps, so every
+// recorded value is off by at most 1/32 (about 3%) from the bucket it lands in. Values past MAX
+// (about 69 s) count as MAX. Recording is one index computation and one increment, no allocation.
+//
+// A histogram has either a single writer, which records with plain increments published by opaque
+// stores, or several, which record with atomic adds. Either way a reader merging with addTo while
+// writers run sees every count before or after an increment, never torn; the other readers are
+// for copies made that way.
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final long MAX = (1L << 36) - 1;
+    private static final int LENGTH = index(MAX) + 1;
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle SUM;
+
+    static {
+        try {
+            SUM = MethodHandles.lookup().findVarHandle(LatencyHistogram.class, "sum", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] counts = new long[LENGTH];
+    private long sum; // Exact, for exporters that report totals
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    // The largest value that lands in the same bucket, as HdrHistogram reports percentiles
+    private static long highestEquivalent(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long mantissa = index - shift * HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    void record(long nanos) {
+        int i = index(Math.max(0, Math.min(nanos, MAX)));
+        COUNTS.setOpaque(counts, i, counts[i] + 1);
+        SUM.setOpaque(this, sum + nanos);
+    }
+
+    // For histograms that several threads record into
+    void recordShared(long nanos) {
+        COUNTS.getAndAdd(counts, index(Math.max(0, Math.min(nanos, MAX))), 1L);
+        SUM.getAndAdd(this, nanos);
+    }
+
+    void addTo(LatencyHistogram merged) {
+        for (int i = 0; i < LENGTH; i++) {
+            merged.counts[i] += (long) COUNTS.getOpaque(counts, i);
+        }
+        merged.sum += (long) SUM.getOpaque(this);
+    }
+
+    long getSum() {
+        return sum;
+    }
+
+    // Values recorded in buckets that lie wholly at or below nanos
+    long countAtOrBelow(long nanos) {
+        long total = 0;
+        for (int i = 0; i < LENGTH && highestEquivalent(i) <= nanos; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    long getCount() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // The smallest recorded value that at least this fraction of all values are no greater than
+    long percentile(double fraction) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            seen += counts[i];
+            if (seen >= wanted) {
+                return highestEquivalent(i);
+            }
+        }
+        return MAX;
+    }
+
+    String format() {
+        return String.format("n=%d p50=%s p90=%s p99=%s p99.9=%s max=%s", getCount(), time(percentile(0.5)), time(percentile(0.9)),
+                time(percentile(0.99)), time(percentile(0.999)), time(percentile(1.0)));
+    }
+
+    private static String time(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
+
+// Latency histograms per table and phase, which every philosopher at the table records into with
+// atomic adds, plus one per philosopher and phase, recorded by that philosopher alone, when asked
+// for. Memory grows with the tables, or with the philosophers at philosopher detail, but not with
+// the threads: a thread per philosopher costs nothing extra. Histograms are created the first time
+// a table or philosopher records and then reused, so recording allocates nothing once a run has
+// warmed up. Contention is limited to the philosophers of one table, who already share forks.
+//
+// Reports are cumulative from the start of the run. Detail picks what is printed:
+//   global        one set of percentiles over everyone
+//   table         and one per table
+//   philosopher   and one per philosopher, which costs three histograms (24 KB) per philosopher
+class LatencyRecorder {
+    private final String detail;
+    private final AtomicReferenceArray<LatencyHistogram[]> byTable; // Indexed by table id, then phase
+    private final AtomicReferenceArray<LatencyHistogram[]> byPhilosopher; // Null below philosopher detail
+
+    // Table ids run up to maxTableId, overflow tables included
+    public LatencyRecorder(String detail, int maxTableId, int philosophers) {
+        this.detail = detail;
+        this.byTable = new AtomicReferenceArray<>(maxTableId + 1);
+        this.byPhilosopher = detail.equals("philosopher") ? new AtomicReferenceArray<>(philosophers) : null;
+    }
+
+    // Null when latency recording is off
+    public static LatencyRecorder forDetail(String detail, int maxTableId, int philosophers) {
+        return detail.equals("off") ? null : new LatencyRecorder(detail, maxTableId, philosophers);
+    }
+
+    public void record(LatencyPhase phase, int philosopherId, int tableId, long nanos) {
+        histograms(byTable, tableId)[phase.ordinal()].recordShared(nanos);
+        if (byPhilosopher != null) {
+            histograms(byPhilosopher, philosopherId)[phase.ordinal()].record(nanos); // Only this philosopher writes these
+        }
+    }
+
+    private static LatencyHistogram[] histograms(AtomicReferenceArray<LatencyHistogram[]> all, int id) {
+        LatencyHistogram[] histograms = all.get(id);
+        if (histograms == null) {
+            LatencyHistogram[] created = new LatencyHistogram[LatencyPhase.count()];
+            for (int phase = 0; phase < created.length; phase++) {
+                created[phase] = new LatencyHistogram();
+            }
+            histograms = all.compareAndSet(id, null, created) ? created : all.get(id); // Tablemates may race to create them
+        }
+        return histograms;
+    }
+
+    // Copies of the histograms, indexed by id and then phase; null for ids that recorded nothing
+    private static LatencyHistogram[][] snapshot(AtomicReferenceArray<LatencyHistogram[]> all) {
+        LatencyHistogram[][] copies = new LatencyHistogram[all.length()][];
+        for (int id = 0; id < copies.length; id++) {
+            LatencyHistogram[] histograms = all.get(id);
+            if (histograms != null) {
+                copies[id] = new LatencyHistogram[histograms.length];
+                for (int phase = 0; phase < histograms.length; phase++) {
+                    copies[id][phase] = new LatencyHistogram();
+                    histograms[phase].addTo(copies[id][phase]);
+                }
+            }
+        }
+        return copies;
+    }
+
+    // Copies of every table's histograms, indexed by table id and then phase; null for tables that
+    // recorded nothing. One call copies all phases, so the phases agree with each other.
+    public LatencyHistogram[][] snapshotByTable() {
+        return snapshot(byTable);
+    }
+
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        LatencyHistogram[][] tables = snapshotByTable();
+        for (int phase = 0; phase < LatencyPhase.count(); phase++) {
+            LatencyHistogram global = new LatencyHistogram();
+            for (LatencyHistogram[] table : tables) {
+                if (table != null) {
+                    table[phase].addTo(global);
+                }
+            }
+            out.append(String.format("Latency, %s: %s%n", LatencyPhase.of(phase).description, global.format()));
+        }
+        if (!detail.equals("global")) {
+            append(out, "table", tables);
+        }
+        if (byPhilosopher != null) {
+            append(out, "philosopher", snapshot(byPhilosopher));
+        }
+        return out.toString();
+    }
+
+    private static void append(StringBuilder out, String scope, LatencyHistogram[][] histograms) {
+        for (int id = 0; id < histograms.length; id++) {
+            if (histograms[id] == null) {
+                continue;
+            }
+            for (int phase = 0; phase < histograms[id].length; phase++) {
+                if (histograms[id][phase].getCount() > 0) {
+                    out.append(String.format("  %s %d, %s: %s%n", scope, id, LatencyPhase.of(phase).description,
+                            histograms[id][phase].format()));
+                }
+            }
+        }
+    }
+
+    // Prints a report every interval until interrupted
+    public Thread startReporter(long intervalNanos) {
+        Thread reporter = new Thread(() -> {
+            long next = System.nanoTime() + intervalNanos;
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                if (System.nanoTime() - next >= 0) {
+                    System.out.print(format());
+                    next += intervalNanos;
+                }
+            }
+        }, "latency-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+        return reporter;
+    }
+}
@@ -0,0 +1,290 @@
+package diningphilosophers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Where philosophers report how often they eat and how long they go hungry first. Like EventLog,
+// a static facade: each call costs one volatile read when no PhilosopherStats is installed, which
+// keeps the benchmarks free of it. Times come from the caller, so the discrete-event engine can
+// report virtual time.
+final class MealStats {
+    private static volatile PhilosopherStats stats;
+
+    private MealStats() {
+    }
+
+    static void install(PhilosopherStats newStats) {
+        stats = newStats;
+    }
+
+    static PhilosopherStats get() {
+        return stats;
+    }
+
+    static void seated(int philosopherId, int tableId) {
+        PhilosopherStats current = stats;
+        if (current != null) {
+            current.seated(philosopherId, tableId);
+        }
+    }
+
+    static void hungry(int philosopherId, long nowNanos) {
+        PhilosopherStats current = stats;
+        if (current != null) {
+            current.hungry(philosopherId, nowNanos);
+        }
+    }
+
+    // Ends the hunger: with both forks, or without them when a deadlock sent the philosopher back
+    static void doneWaiting(int philosopherId, long nowNanos) {
+        PhilosopherStats current = stats;
+        if (current != null) {
+            current.doneWaiting(philosopherId, nowNanos);
+        }
+    }
+
+    // Called where the engine counts the meal in its own total, so the two always agree
+    static void ate(int philosopherId) {
+        PhilosopherStats current = stats;
+        if (current != null) {
+            current.ate(philosopherId);
+        }
+    }
+}
+
+// One slot of counters per philosopher, 64 bytes each, so that two philosophers' counters share at
+// most the line where one slot ends and the next begins (Java does not align long[] elements to
+// cache lines, so a slot may straddle two). A slot has a single writer, its philosopher (or
+// whichever worker steps it, never two at once), so updates are plain read-modify-writes published
+// with release stores: no CAS, no shared counter. Readers can take a snapshot at any time; it is
+// consistent per philosopher, not an atomic cut across all of them.
+class PhilosopherStats {
+    private static final int SLOT = 8; // Longs per slot: 64 bytes
+    private static final int MEALS = 0;
+    private static final int HUNGRY_NANOS = 1;
+    private static final int MAX_HUNGRY_NANOS = 2;
+    private static final int HUNGRY_SINCE = 3; // NOT_HUNGRY unless the philosopher is waiting for forks
+    private static final int STARVATIONS = 4; // Hungers that lasted longer than the threshold
+    private static final int TABLE = 5;
+    private static final long NOT_HUNGRY = Long.MIN_VALUE;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int philosophers;
+    private final long starvationThresholdNanos;
+    private final long[] slots; // Slot 0 is left empty so the first philosopher's is clear of the array header
+
+    public PhilosopherStats(int philosophers, long starvationThresholdNanos) {
+        this.philosophers = philosophers;
+        this.starvationThresholdNanos = starvationThresholdNanos;
+        this.slots = new long[(philosophers + 1) * SLOT];
+        for (int id = 0; id < philosophers; id++) {
+            slots[base(id) + HUNGRY_SINCE] = NOT_HUNGRY;
+        }
+    }
+
+    private static int base(int philosopherId) {
+        return (philosopherId + 1) * SLOT;
+    }
+
+    public void seated(int philosopherId, int tableId) {
+        SLOTS.setRelease(slots, base(philosopherId) + TABLE, (long) tableId);
+    }
+
+    public void hungry(int philosopherId, long nowNanos) {
+        SLOTS.setRelease(slots, base(philosopherId) + HUNGRY_SINCE, nowNanos);
+    }
+
+    public void doneWaiting(int philosopherId, long nowNanos) {
+        int base = base(philosopherId);
+        long since = slots[base + HUNGRY_SINCE];
+        if (since == NOT_HUNGRY) {
+            return;
+        }
+        long hungry = nowNanos - since;
+        SLOTS.setRelease(slots, base + HUNGRY_NANOS, slots[base + HUNGRY_NANOS] + hungry);
+        if (hungry > slots[base + MAX_HUNGRY_NANOS]) {
+            SLOTS.setRelease(slots, base + MAX_HUNGRY_NANOS, hungry);
+        }
+        if (hungry > starvationThresholdNanos) {
+            SLOTS.setRelease(slots, base + STARVATIONS, slots[base + STARVATIONS] + 1);
+        }
+        SLOTS.setRelease(slots, base + HUNGRY_SINCE, NOT_HUNGRY);
+    }
+
+    public void ate(int philosopherId) {
+        int base = base(philosopherId);
+        SLOTS.setRelease(slots, base + MEALS, slots[base + MEALS] + 1);
+    }
+
+    public long getStarvationThresholdNanos() {
+        return starvationThresholdNanos;
+    }
+
+    // A philosopher hungry for longer than the threshold at nowNanos counts as starving now
+    public FairnessSnapshot snapshot(long nowNanos) {
+        FairnessSnapshot snapshot = new FairnessSnapshot(starvationThresholdNanos);
+        for (int id = 0; id < philosophers; id++) {
+            int base = base(id);
+            long since = (long) SLOTS.getAcquire(slots, base + HUNGRY_SINCE);
+            long hungryNow = since == NOT_HUNGRY ? 0 : Math.max(0, nowNanos - since);
+            snapshot.add(id, (int) (long) SLOTS.getAcquire(slots, base + TABLE), (long) SLOTS.getAcquire(slots, base + MEALS),
+                    (long) SLOTS.getAcquire(slots, base + HUNGRY_NANOS), (long) SLOTS.getAcquire(slots, base + MAX_HUNGRY_NANOS),
+                    (long) SLOTS.getAcquire(slots, base + STARVATIONS), hungryNow);
+        }
+        return snapshot;
+    }
+
+    // Prints a snapshot every interval until interrupted
+    public Thread startReporter(long intervalNanos) {
+        Thread reporter = new Thread(() -> {
+            long next = System.nanoTime() + intervalNanos;
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                if (System.nanoTime() - next >= 0) {
+                    System.out.print(snapshot(System.nanoTime()).format());
+                    next += intervalNanos;
+                }
+            }
+        }, "stats-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+        return reporter;
+    }
+}
+
+// Meals and hunger summed per table and over everyone, with Jain's fairness index over meals:
+// (sum x)^2 / (n * sum x^2), 1 when every philosopher ate equally often and 1/n when one ate alone.
+class FairnessSnapshot {
+    private static final int MAX_ALERTS = 20; // Tables listed before the rest are only counted
+    private static final int MAX_NAMED = 5; // Starving philosophers named per table
+
+    static final class TableFairness {
+        final int tableId;
+        int philosophers;
+        long meals;
+        double mealSquares;
+        long minMeals = Long.MAX_VALUE;
+        long maxMeals;
+        long maxHungryNanos;
+        long starvations;
+        int starvingNow;
+        long longestHungerNow;
+        final List<Integer> starving = new ArrayList<>();
+
+        TableFairness(int tableId) {
+            this.tableId = tableId;
+        }
+
+        public double getFairness() {
+            return jain(philosophers, meals, mealSquares);
+        }
+
+        public boolean hasStarvation() {
+            return starvingNow > 0 || starvations > 0;
+        }
+    }
+
+    private final long thresholdNanos;
+    private final Map<Integer, TableFairness> tables = new TreeMap<>();
+    private int philosophers;
+    private long meals;
+    private double mealSquares;
+    private long hungryNanos;
+    private long maxHungryNanos;
+    private long starvations;
+    private int starvingNow;
+
+    FairnessSnapshot(long thresholdNanos) {
+        this.thresholdNanos = thresholdNanos;
+    }
+
+    void add(int philosopherId, int tableId, long meals, long hungryNanos, long maxHungryNanos, long starvations, long hungryNow) {
+        TableFairness table = tables.computeIfAbsent(tableId, TableFairness::new);
+        double squared = (double) meals * meals;
+        long longest = Math.max(maxHungryNanos, hungryNow);
+        boolean starving = hungryNow > thresholdNanos;
+
+        table.philosophers++;
+        table.meals += meals;
+        table.mealSquares += squared;
+        table.minMeals = Math.min(table.minMeals, meals);
+        table.maxMeals = Math.max(table.maxMeals, meals);
+        table.maxHungryNanos = Math.max(table.maxHungryNanos, longest);
+        table.starvations += starvations;
+        if (starving) {
+            table.starvingNow++;
+            table.longestHungerNow = Math.max(table.longestHungerNow, hungryNow);
+            if (table.starving.size() < MAX_NAMED) {
+                table.starving.add(philosopherId);
+            }
+        }
+
+        this.philosophers++;
+        this.meals += meals;
+        this.mealSquares += squared;
+        this.hungryNanos += hungryNanos;
+        this.maxHungryNanos = Math.max(this.maxHungryNanos, longest);
+        this.starvations += starvations;
+        this.starvingNow += starving ? 1 : 0;
+    }
+
+    private static double jain(int n, long sum, double squares) {
+        return squares == 0 ? 1.0 : (double) sum * sum / (n * squares);
+    }
+
+    public long getMeals() {
+        return meals;
+    }
+
+    public double getFairness() {
+        return jain(philosophers, meals, mealSquares);
+    }
+
+    public long getMaxHungryNanos() {
+        return maxHungryNanos;
+    }
+
+    public long getStarvations() {
+        return starvations;
+    }
+
+    public int getStarvingNow() {
+        return starvingNow;
+    }
+
+    public List<TableFairness> getTables() {
+        return new ArrayList<>(tables.values());
+    }
+
+    // One line overall, then a starvation alert per table that has one
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        long thresholdMillis = TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+        out.append(String.format("Fairness: %d meals by %d philosophers, Jain index %.4f, hungry %.1f ms per meal, longest %.1f ms,"
+                + " %d starving now, %d waits over %d ms%n", meals, philosophers, getFairness(),
+                meals == 0 ? 0.0 : hungryNanos / 1e6 / meals, maxHungryNanos / 1e6, starvingNow, starvations, thresholdMillis));
+        int alerts = 0;
+        for (TableFairness table : tables.values()) {
+            if (!table.hasStarvation()) {
+                continue;
+            }
+            if (++alerts > MAX_ALERTS) {
+                continue;
+            }
+            out.append(String.format("  Starvation at table %d: %d starving now%s, %d waits over %d ms; meals %d-%d, Jain index %.4f%n",
+                    table.tableId, table.starvingNow, table.starvingNow == 0 ? ""
+                            : " " + table.starving + " (longest " + TimeUnit.NANOSECONDS.toMillis(table.longestHungerNow) + " ms)",
+                    table.starvations, thresholdMillis, table.minMeals, table.maxMeals, table.getFairness()));
+        }
+        if (alerts > MAX_ALERTS) {
+            out.append(String.format("  ... and %d more tables with starvation%n", alerts - MAX_ALERTS));
+        }
+        return out.toString();
+    }
+}
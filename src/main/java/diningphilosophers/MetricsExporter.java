@@ -0,0 +1,222 @@
+package diningphilosophers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+// Serves the threaded engine's figures at http://127.0.0.1:PORT/metrics for Prometheus, in the
+// text exposition format or in OpenMetrics when the scraper asks for it. Bound to the loopback
+// address only. A scrape reads LongAdders, volatile fields and the per-table latency histograms,
+// which philosophers update with atomic adds, and takes no lock a philosopher could be waiting on.
+//
+// Histogram buckets follow the latency histograms' own, so a bucket boundary may be off by their
+// 3%. Fork wait histograms need --latency or are recorded at global detail just for the exporter,
+// which costs three histograms per table. Each scrape copies them once, for all three phases.
+class MetricsExporter {
+    private static final String[] BUCKET_SECONDS = {"0.000001", "0.00001", "0.0001", "0.001", "0.005", "0.01", "0.025", "0.05", "0.1",
+            "0.25", "0.5", "1", "2.5", "5", "10"};
+    private static final String PROMETHEUS_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String OPENMETRICS_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final HttpServer server;
+    private final Table[] tables;
+    private final OverflowPool overflowTables;
+    private final DeadlockDetector deadlockDetector; // Null unless the heuristic detector runs
+    private final WaitForGraph waitForGraph; // Null unless the graph detector runs
+    private final PhilosopherStats stats;
+    private final LatencyRecorder latency;
+
+    public MetricsExporter(int port, Table[] tables, OverflowPool overflowTables, DeadlockDetector deadlockDetector,
+            WaitForGraph waitForGraph, PhilosopherStats stats, LatencyRecorder latency) throws IOException {
+        this.tables = tables;
+        this.overflowTables = overflowTables;
+        this.deadlockDetector = deadlockDetector;
+        this.waitForGraph = waitForGraph;
+        this.stats = stats;
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+            byte[] body = scrape(openMetrics).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", openMetrics ? OPENMETRICS_TYPE : PROMETHEUS_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    String scrape(boolean openMetrics) {
+        Exposition out = new Exposition(openMetrics);
+        List<OverflowTable> overflow = overflowTables.getTables();
+
+        out.counter("dining_meals", "Meals eaten, by table");
+        for (Table table : tables) {
+            out.sample("dining_meals_total", table(table), table.getMeals());
+        }
+        for (OverflowTable table : overflow) {
+            out.sample("dining_meals_total", table(table), table.getMeals());
+        }
+
+        out.counter("dining_deadlocks_detected", "Deadlocks detected, by table");
+        for (Table table : tables) {
+            out.sample("dining_deadlocks_detected_total", table(table), table.getDeadlocks());
+        }
+        for (OverflowTable table : overflow) {
+            out.sample("dining_deadlocks_detected_total", table(table), table.getDeadlocks());
+        }
+
+        out.counter("dining_evictions", "Deadlock victims moved to an overflow table, by source table");
+        for (Table table : tables) {
+            out.sample("dining_evictions_total", table(table), table.getEvictions());
+        }
+
+        out.counter("dining_victims_stranded", "Deadlock victims kept at their table because every overflow table was full");
+        out.sample("dining_victims_stranded_total", "", overflowTables.getStranded());
+        if (deadlockDetector != null) {
+            out.counter("dining_deadlock_suspects", "Stalls reported to the heuristic deadlock detector");
+            out.sample("dining_deadlock_suspects_total", "", deadlockDetector.getSuspectsReported());
+        }
+        if (waitForGraph != null) {
+            out.counter("dining_wait_for_graph_detection_seconds", "Time the wait-for graph spent finding cycles");
+            out.sample("dining_wait_for_graph_detection_seconds_total", "", waitForGraph.getDetectionNanos() / 1e9);
+        }
+
+        out.gauge("dining_overflow_seated", "Philosophers seated at an overflow table");
+        for (OverflowTable table : overflow) {
+            out.sample("dining_overflow_seated", table(table), table.getSeated());
+        }
+        out.gauge("dining_overflow_capacity_seats", "Seats an overflow table has allocated so far");
+        for (OverflowTable table : overflow) {
+            out.sample("dining_overflow_capacity_seats", table(table), table.getCapacity());
+        }
+        out.gauge("dining_overflow_max_capacity_seats", "Seats an overflow table may grow to");
+        for (OverflowTable table : overflow) {
+            out.sample("dining_overflow_max_capacity_seats", table(table), table.getMaxCapacity());
+        }
+        out.counter("dining_overflow_turned_away", "Victims an overflow table turned away because it was full");
+        for (OverflowTable table : overflow) {
+            out.sample("dining_overflow_turned_away_total", table(table), table.getTurnedAway());
+        }
+        out.counter("dining_overflow_migrations", "Victims that have started eating at an overflow table");
+        for (OverflowTable table : overflow) {
+            out.sample("dining_overflow_migrations_total", table(table), table.getMigrations());
+        }
+
+        FairnessSnapshot fairness = stats.snapshot(System.nanoTime());
+        out.gauge("dining_fairness_jain_index", "Jain's fairness index over meals per philosopher, 1 when all ate equally");
+        out.sample("dining_fairness_jain_index", "", fairness.getFairness());
+        out.gauge("dining_philosophers_starving", "Philosophers hungry for longer than the starvation threshold right now");
+        out.sample("dining_philosophers_starving", "", fairness.getStarvingNow());
+
+        if (latency != null) {
+            LatencyHistogram[][] byTable = latency.snapshotByTable();
+            histogram(out, "dining_fork_wait_seconds", "Time blocked waiting for a fork, by table", byTable, LatencyPhase.BLOCKED);
+            histogram(out, "dining_hunger_seconds", "Time from hungry to holding both forks, by table", byTable, LatencyPhase.ACQUIRE);
+            histogram(out, "dining_meal_duration_seconds", "Time spent eating, by table", byTable, LatencyPhase.EATING);
+        }
+        return out.finish();
+    }
+
+    private static void histogram(Exposition out, String name, String help, LatencyHistogram[][] byTable, LatencyPhase phase) {
+        out.histogram(name, help);
+        for (int tableId = 0; tableId < byTable.length; tableId++) {
+            if (byTable[tableId] == null) {
+                continue;
+            }
+            LatencyHistogram histogram = byTable[tableId][phase.ordinal()];
+            String table = "table=\"" + tableId + "\"";
+            for (String bound : BUCKET_SECONDS) {
+                out.sample(name + "_bucket", table + ",le=\"" + bound + "\"", histogram.countAtOrBelow((long) (Double.parseDouble(bound) * 1e9)));
+            }
+            long count = histogram.getCount();
+            out.sample(name + "_bucket", table + ",le=\"+Inf\"", count);
+            out.sample(name + "_count", table, count);
+            out.sample(name + "_sum", table, histogram.getSum() / 1e9);
+        }
+    }
+
+    private static String table(Table table) {
+        return "table=\"" + table.getTableId() + "\"";
+    }
+
+    // The two formats differ only in how a counter family is named and in the closing # EOF
+    private static final class Exposition {
+        private final boolean openMetrics;
+        private final StringBuilder out = new StringBuilder(4096);
+
+        Exposition(boolean openMetrics) {
+            this.openMetrics = openMetrics;
+        }
+
+        void counter(String family, String help) {
+            header(openMetrics ? family : family + "_total", "counter", help);
+        }
+
+        void gauge(String family, String help) {
+            header(family, "gauge", help);
+        }
+
+        void histogram(String family, String help) {
+            header(family, "histogram", help);
+        }
+
+        private void header(String family, String type, String help) {
+            out.append("# HELP ").append(family).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+        }
+
+        void sample(String name, String labels, long value) {
+            label(name, labels).append(value).append('\n');
+        }
+
+        void sample(String name, String labels, double value) {
+            label(name, labels).append(value).append('\n');
+        }
+
+        private StringBuilder label(String name, String labels) {
+            out.append(name);
+            if (!labels.isEmpty()) {
+                out.append('{').append(labels).append('}');
+            }
+            return out.append(' ');
+        }
+
+        String finish() {
+            if (openMetrics) {
+                out.append("# EOF\n");
+            }
+            return out.toString();
+        }
+    }
+}
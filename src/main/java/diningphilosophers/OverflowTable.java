@@ -0,0 +1,281 @@
+package diningphilosophers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// The sixth table, where deadlock victims from every table are sent. Any number of detectors may
+// evict at once, so seats are claimed with a CAS on the next free index rather than by scanning.
+// The forks live in segments that double in size and are allocated on first use, so the table
+// grows from its initial capacity up to maxCapacity without copying or locking. A victim arriving
+// once it is full is turned away and the pool tries another overflow table.
+//
+// Seat i eats with forks i and i+1, each created by the first seat to ask for it, so the
+// philosophers sit in a line that only closes into a ring, and can only deadlock, once the last
+// seat is taken.
+class OverflowTable extends Table {
+    private final int initialCapacity;
+    private final int maxCapacity;
+    private final ForkType forkType;
+    private final ForkLayout forkLayout;
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicReferenceArray<Fork>> forkSegments;
+    private final LongAdder turnedAway = new LongAdder();
+    private final LongAdder claimRetries = new LongAdder(); // Lost seat CASes: contention between evictions
+    private final LongAdder migrations = new LongAdder();
+    private final LongAdder migrationNanos = new LongAdder();
+
+    public OverflowTable(int tableId, Fork[] forks, int waiterPermits, int maxCapacity, ForkType forkType, ForkLayout forkLayout) {
+        super(tableId, new Philosopher[0], forks, null, waiterPermits);
+        this.initialCapacity = forks.length;
+        this.maxCapacity = maxCapacity;
+        this.forkType = forkType;
+        this.forkLayout = forkLayout;
+        this.forkSegments = new AtomicReferenceArray<>(segmentOf(maxCapacity - 1) + 1);
+        forkSegments.set(0, new AtomicReferenceArray<>(forks));
+    }
+
+    // Returns the claimed seat, or -1 if the table is full. Only the seat number is kept: the
+    // philosopher finds its way there through the forks it is given.
+    public int claimSeat() {
+        int seat = claimed.get();
+        while (true) {
+            if (seat >= maxCapacity) {
+                turnedAway.increment();
+                return -1;
+            }
+            if (claimed.compareAndSet(seat, seat + 1)) {
+                return seat;
+            }
+            claimRetries.increment();
+            seat = claimed.get();
+        }
+    }
+
+    public Fork getLeftFork(int seat) {
+        return forkAt(seat);
+    }
+
+    public Fork getRightFork(int seat) {
+        return forkAt((seat + 1) % maxCapacity);
+    }
+
+    private Fork forkAt(int index) {
+        AtomicReferenceArray<Fork> forks = segment(index);
+        int offset = index - (int) segmentStart(segmentOf(index));
+        Fork fork = forks.get(offset);
+        if (fork == null) {
+            forks.compareAndSet(offset, null, forkType.create(index, forkLayout)); // Neighbouring seats may race to create it
+            fork = forks.get(offset);
+        }
+        return fork;
+    }
+
+    // The segment holding fork index, allocated by whichever caller gets there first
+    private AtomicReferenceArray<Fork> segment(int index) {
+        int segment = segmentOf(index);
+        AtomicReferenceArray<Fork> forks = forkSegments.get(segment);
+        if (forks == null) {
+            int size = (int) Math.min((long) initialCapacity << segment, maxCapacity - segmentStart(segment)); // The last segment stops at maxCapacity
+            forkSegments.compareAndSet(segment, null, new AtomicReferenceArray<>(size));
+            forks = forkSegments.get(segment);
+        }
+        return forks;
+    }
+
+    // Segment k holds initialCapacity << k seats, starting at seat initialCapacity * (2^k - 1)
+    private int segmentOf(int seat) {
+        return 31 - Integer.numberOfLeadingZeros(seat / initialCapacity + 1);
+    }
+
+    private long segmentStart(int segment) {
+        return initialCapacity * ((1L << segment) - 1);
+    }
+
+    // From the victim's eviction to it switching to this table's forks
+    void recordMigration(long nanos) {
+        migrations.increment();
+        migrationNanos.add(nanos);
+    }
+
+    public long getMigrations() {
+        return migrations.sum();
+    }
+
+    public long getMigrationNanos() {
+        return migrationNanos.sum();
+    }
+
+    public int getSeated() {
+        return claimed.get();
+    }
+
+    // Seats allocated so far, which grows in doubling steps as philosophers arrive
+    public int getCapacity() {
+        int seated = claimed.get();
+        return seated == 0 ? initialCapacity : (int) Math.min(segmentStart(segmentOf(seated - 1) + 1), maxCapacity);
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    public long getTurnedAway() {
+        return turnedAway.sum();
+    }
+
+    public long getClaimRetries() {
+        return claimRetries.sum();
+    }
+
+    public boolean isFull() {
+        return claimed.get() >= maxCapacity;
+    }
+}
+
+// The overflow tables deadlock victims are sent to. Tables are created on first use, up to
+// maxTables, so small runs keep a single sixth table while large ones spread evictions over many.
+//   least-loaded  the created table with the fewest seated philosophers; a new table is opened
+//                 once every existing one has filled its initial seats
+//   hash          the source table's id picks a table, so each table's victims stay together
+// Either way a full table passes the victim on to the next one, and the victim stays at its own
+// table only once every overflow table is full.
+class OverflowPool {
+    private final int firstTableId;
+    private final AtomicReferenceArray<OverflowTable> tables;
+    private final boolean leastLoaded;
+    private final SimulationConfig config;
+    private final LongAdder creationRaces = new LongAdder(); // Tables built by a losing creator and dropped
+    private final LongAdder stranded = new LongAdder();
+    private volatile DeadlockDetector deadlockDetector;
+    private Consumer<OverflowTable> onCreated; // Guarded by this, with announced
+    private final boolean[] announced;
+
+    public OverflowPool(int firstTableId, int maxTables, String placement, SimulationConfig config) {
+        this.firstTableId = firstTableId;
+        this.tables = new AtomicReferenceArray<>(maxTables);
+        this.leastLoaded = placement.equals("least-loaded");
+        this.config = config;
+        this.announced = new boolean[maxTables];
+        get(0); // The sixth table always exists
+    }
+
+    // Applied to tables created later too, so the detector also watches the overflow tables
+    public void watchWith(DeadlockDetector deadlockDetector) {
+        this.deadlockDetector = deadlockDetector;
+        for (int i = 0; i < tables.length(); i++) {
+            OverflowTable table = tables.get(i);
+            if (table != null) {
+                table.watchWith(deadlockDetector);
+            }
+        }
+    }
+
+    // Called once for every table created so far and every one created later, from whichever thread creates it
+    public synchronized void onTableCreated(Consumer<OverflowTable> listener) {
+        this.onCreated = listener;
+        for (int i = 0; i < tables.length(); i++) {
+            if (tables.get(i) != null) {
+                announce(i);
+            }
+        }
+    }
+
+    // Seats the victim at an overflow table and returns it, or returns null if every table is full.
+    // The victim switches to the new table and its forks the next time it reaches for forks.
+    public OverflowTable place(Table source, Philosopher victim) {
+        long began = System.nanoTime();
+        int start = leastLoaded ? leastLoadedIndex() : Math.floorMod(source.getTableId(), tables.length());
+        for (int i = 0; i < tables.length(); i++) {
+            OverflowTable table = get((start + i) % tables.length());
+            int seat = table.claimSeat();
+            if (seat >= 0) {
+                EventLog.record(victim.getPhilosopherId(), table.getTableId(), EventType.MOVED_TO_SIXTH_TABLE);
+                victim.migrateTo(table, table.getLeftFork(seat), table.getRightFork(seat), began);
+                return table;
+            }
+        }
+        stranded.increment();
+        EventLog.record(victim.getPhilosopherId(), source.getTableId(), EventType.OVERFLOW_TABLE_FULL);
+        return null;
+    }
+
+    private int leastLoadedIndex() {
+        int best = 0;
+        int bestSeated = Integer.MAX_VALUE;
+        int i = 0;
+        for (; i < tables.length(); i++) {
+            OverflowTable table = tables.get(i);
+            if (table == null) {
+                break;
+            }
+            int seated = table.getSeated();
+            if (seated < bestSeated && !table.isFull()) {
+                best = i;
+                bestSeated = seated;
+            }
+        }
+        // Open a new table rather than make an existing one grow past its initial seats
+        if (i < tables.length() && bestSeated >= config.getOverflowCapacity()) {
+            return i;
+        }
+        return best;
+    }
+
+    private OverflowTable get(int index) {
+        OverflowTable table = tables.get(index);
+        if (table != null) {
+            return table;
+        }
+        int tableId = firstTableId + index;
+        int capacity = config.getOverflowCapacity();
+        Fork[] forks = new Fork[capacity];
+        for (int i = 0; i < capacity; i++) {
+            forks[i] = config.getForkType().create(i, config.getForkLayout());
+        }
+        OverflowTable created = new OverflowTable(tableId, forks, config.getWaiterPermits(tableId, capacity),
+                config.getOverflowMaxCapacity(), config.getForkType(), config.getForkLayout());
+        created.watchWith(deadlockDetector);
+        if (tables.compareAndSet(index, null, created)) {
+            announce(index);
+            return created;
+        }
+        creationRaces.increment();
+        return tables.get(index);
+    }
+
+    // A table created while the listener is being installed may be announced from both sides; only once counts
+    private synchronized void announce(int index) {
+        if (onCreated != null && !announced[index]) {
+            announced[index] = true;
+            onCreated.accept(tables.get(index));
+        }
+    }
+
+    // The tables created so far, in id order
+    public List<OverflowTable> getTables() {
+        List<OverflowTable> created = new ArrayList<>();
+        for (int i = 0; i < tables.length(); i++) {
+            OverflowTable table = tables.get(i);
+            if (table != null) {
+                created.add(table);
+            }
+        }
+        return created;
+    }
+
+    public long getStranded() {
+        return stranded.sum();
+    }
+
+    public int getMaxTables() {
+        return tables.length();
+    }
+
+    public long getCreationRaces() {
+        return creationRaces.sum();
+    }
+}
@@ -0,0 +1,182 @@
+package diningphilosophers;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// How long one phase lasts, drawn from the philosopher's own stream. Written as
+//   zero                 no pause at all
+//   constant:D           always D
+//   uniform:MAX          anywhere in [0, MAX)
+//   exponential:MEAN     memoryless, mean MEAN
+//   pareto:MIN[:ALPHA]   heavy-tailed, never below MIN; ALPHA (default 1.5) <= 1 has no finite mean
+// Durations take the same units as --duration; bare numbers are milliseconds.
+abstract class DurationModel {
+    // Caps a heavy-tail draw so it cannot overflow a clock, real or virtual
+    private static final long MAX_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final String spec;
+
+    private DurationModel(String spec) {
+        this.spec = spec;
+    }
+
+    abstract long nextNanos(SplittableRandom random);
+
+    // Long.MAX_VALUE when the mean is infinite
+    abstract long meanNanos();
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    static DurationModel parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        switch (parts[0]) {
+            case "zero":
+                return constant(spec, 0);
+            case "constant":
+                return constant(spec, duration(parts, 1, spec, true));
+            case "uniform": {
+                long max = duration(parts, 1, spec, false);
+                return new DurationModel(spec) {
+                    @Override
+                    long nextNanos(SplittableRandom random) {
+                        return random.nextLong(max);
+                    }
+
+                    @Override
+                    long meanNanos() {
+                        return max / 2;
+                    }
+                };
+            }
+            case "exponential": {
+                long mean = duration(parts, 1, spec, false);
+                return new DurationModel(spec) {
+                    @Override
+                    long nextNanos(SplittableRandom random) {
+                        return (long) Math.min(-mean * Math.log(1 - random.nextDouble()), MAX_NANOS);
+                    }
+
+                    @Override
+                    long meanNanos() {
+                        return mean;
+                    }
+                };
+            }
+            case "pareto": {
+                long min = duration(parts, 1, spec, false);
+                double alpha = parts.length > 2 ? Double.parseDouble(parts[2]) : 1.5;
+                if (!(alpha > 0)) {
+                    throw new IllegalArgumentException("Pareto shape must be positive: " + spec);
+                }
+                return new DurationModel(spec) {
+                    @Override
+                    long nextNanos(SplittableRandom random) {
+                        return (long) Math.min(min / Math.pow(1 - random.nextDouble(), 1 / alpha), MAX_NANOS);
+                    }
+
+                    @Override
+                    long meanNanos() {
+                        return alpha <= 1 ? Long.MAX_VALUE : (long) (min * alpha / (alpha - 1));
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown duration model: " + spec
+                        + " (expected zero, constant:D, uniform:MAX, exponential:MEAN or pareto:MIN[:ALPHA])");
+        }
+    }
+
+    private static DurationModel constant(String spec, long nanos) {
+        return new DurationModel(spec) {
+            @Override
+            long nextNanos(SplittableRandom random) {
+                return nanos;
+            }
+
+            @Override
+            long meanNanos() {
+                return nanos;
+            }
+        };
+    }
+
+    private static long duration(String[] parts, int index, String spec, boolean zeroAllowed) {
+        if (parts.length <= index) {
+            throw new IllegalArgumentException("Missing duration in " + spec);
+        }
+        long nanos = SimulationConfig.parseNanos(parts[index], TimeUnit.MILLISECONDS);
+        if (nanos < 0 || (nanos == 0 && !zeroAllowed)) {
+            throw new IllegalArgumentException("Duration must be " + (zeroAllowed ? "non-negative" : "positive") + " in " + spec);
+        }
+        return nanos;
+    }
+}
+
+// The three timed phases of a philosopher and how a threaded one waits them out. Pauses of a
+// millisecond or more sleep; shorter ones park, or busy-spin when asked to, since a sleep that
+// short mostly measures the timer slack. A zero pause returns at once, which leaves the fork
+// protocol as the only thing slowing a philosopher down.
+class PhaseDurations {
+    private static final long ONE_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // The original scaled-down phases: think 0-100ms, hesitate 0-40ms, eat 0-50ms
+    static final DurationModel DEFAULT_THINK = DurationModel.parse("uniform:100ms");
+    static final DurationModel DEFAULT_HESITATE = DurationModel.parse("uniform:40ms");
+    static final DurationModel DEFAULT_EAT = DurationModel.parse("uniform:50ms");
+    static final DurationModel ZERO = DurationModel.parse("zero");
+    static final PhaseDurations DEFAULT = new PhaseDurations(DEFAULT_THINK, DEFAULT_HESITATE, DEFAULT_EAT, false);
+
+    private final DurationModel think;
+    private final DurationModel hesitate;
+    private final DurationModel eat;
+    private final boolean spin;
+
+    public PhaseDurations(DurationModel think, DurationModel hesitate, DurationModel eat, boolean spin) {
+        this.think = think;
+        this.hesitate = hesitate;
+        this.eat = eat;
+        this.spin = spin;
+    }
+
+    public static PhaseDurations from(SimulationConfig config) {
+        return new PhaseDurations(config.getThinkDuration(), config.getHesitateDuration(), config.getEatDuration(),
+                config.getShortPause().equals("spin"));
+    }
+
+    public long think(SplittableRandom random) {
+        return think.nextNanos(random);
+    }
+
+    public long hesitate(SplittableRandom random) {
+        return hesitate.nextNanos(random);
+    }
+
+    public long eat(SplittableRandom random) {
+        return eat.nextNanos(random);
+    }
+
+    public void pause(long nanos) throws InterruptedException {
+        if (nanos >= ONE_MILLI) {
+            Thread.sleep(nanos / ONE_MILLI, (int) (nanos % ONE_MILLI));
+            return;
+        }
+        if (nanos == 0) {
+            return; // The run loop still stops on interrupt
+        }
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            if (spin) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, remaining);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
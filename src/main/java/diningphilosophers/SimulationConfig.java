@@ -0,0 +1,511 @@
+package diningphilosophers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// Run parameters, read from an optional properties file and then overridden by --key=value flags
+class SimulationConfig {
+    private int tables = 5;
+    private int seatsPerTable = 5;
+    private int overflowCapacity = 5;
+    private int overflowMaxCapacity = 0; // 0 means room for every philosopher
+    private int overflowTables = 1;
+    private String overflowPlacement = "least-loaded";
+    private long durationMillis = 100000;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+    private ForkType forkType = ForkType.LOCK;
+    private ForkLayout forkLayout = ForkLayout.COMPACT;
+    private String strategy = "left-right";
+    private String detector = "auto";
+    private int waiterPermits = 0; // 0 means one fewer than the table's seats
+    private final Map<Integer, Integer> waiterPermitsByTable = new HashMap<>();
+    private long tryLockTimeoutNanos = 0;
+    private long backoffMinNanos = TimeUnit.MICROSECONDS.toNanos(50);
+    private long backoffMaxNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private boolean backoffJitter = true;
+    private String logMode = "async";
+    private String engine = "threads";
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long seed = System.nanoTime(); // Printed at the end so a run can be repeated
+    private String recordPath;
+    private String replayPath;
+    private DurationModel thinkDuration = PhaseDurations.DEFAULT_THINK;
+    private DurationModel hesitateDuration = PhaseDurations.DEFAULT_HESITATE;
+    private DurationModel eatDuration = PhaseDurations.DEFAULT_EAT;
+    private String shortPause = "park";
+    private boolean zeroSleep;
+    private long starvationThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+    private long statsIntervalNanos = 0; // 0 means only at the end
+    private String latencyDetail = "off";
+    private long latencyIntervalNanos = 0; // 0 means only at the end
+    private boolean jmx;
+    private int metricsPort = 0; // 0 means no exporter
+
+    public static SimulationConfig parse(String[] args) throws IOException {
+        SimulationConfig config = new SimulationConfig();
+
+        // The file is applied first wherever --config appears, so flags always win over it
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                Properties properties = new Properties();
+                try (Reader reader = Files.newBufferedReader(Paths.get(arg.substring("--config=".length())))) {
+                    properties.load(reader);
+                }
+                for (String key : properties.stringPropertyNames()) {
+                    config.set(key, properties.getProperty(key).trim());
+                }
+            }
+        }
+
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            config.set(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        config.validate();
+        return config;
+    }
+
+    private void set(String key, String value) {
+        if (key.startsWith("waiter-permits.")) {
+            waiterPermitsByTable.put(Integer.parseInt(key.substring("waiter-permits.".length())), Integer.parseInt(value));
+            return;
+        }
+        switch (key) {
+            case "tables":
+                tables = Integer.parseInt(value);
+                break;
+            case "seats":
+                seatsPerTable = Integer.parseInt(value);
+                break;
+            case "overflow-capacity":
+                overflowCapacity = Integer.parseInt(value);
+                break;
+            case "overflow-max-capacity":
+                overflowMaxCapacity = Integer.parseInt(value);
+                break;
+            case "overflow-tables":
+                overflowTables = Integer.parseInt(value);
+                break;
+            case "overflow-placement":
+                if (!value.equals("least-loaded") && !value.equals("hash")) {
+                    throw new IllegalArgumentException("Unknown overflow placement: " + value + " (expected least-loaded or hash)");
+                }
+                overflowPlacement = value;
+                break;
+            case "duration":
+                durationMillis = TimeUnit.NANOSECONDS.toMillis(parseNanos(value, TimeUnit.SECONDS));
+                break;
+            case "threads":
+                executionMode = ExecutionMode.parse(value);
+                break;
+            case "fork":
+                forkType = ForkType.parse(value);
+                break;
+            case "fork-layout":
+                forkLayout = ForkLayout.parse(value);
+                break;
+            case "strategy":
+                strategy = value;
+                break;
+            case "detector":
+                if (!value.equals("auto") && !value.equals("graph") && !value.equals("heuristic") && !value.equals("off")) {
+                    throw new IllegalArgumentException("Unknown detector setting: " + value + " (expected auto, graph, heuristic or off)");
+                }
+                detector = value;
+                break;
+            case "waiter-permits":
+                waiterPermits = Integer.parseInt(value);
+                break;
+            case "trylock-timeout":
+                tryLockTimeoutNanos = parseNanos(value, TimeUnit.MICROSECONDS);
+                break;
+            case "backoff-min":
+                backoffMinNanos = parseNanos(value, TimeUnit.MICROSECONDS);
+                break;
+            case "backoff-max":
+                backoffMaxNanos = parseNanos(value, TimeUnit.MICROSECONDS);
+                break;
+            case "backoff-jitter":
+                backoffJitter = parseBoolean(key, value);
+                break;
+            case "engine":
+                if (!value.equals("threads") && !value.equals("work-stealing") && !value.equals("discrete-event")) {
+                    throw new IllegalArgumentException("Unknown engine: " + value + " (expected threads, work-stealing or discrete-event)");
+                }
+                engine = value;
+                break;
+            case "parallelism":
+                parallelism = Integer.parseInt(value);
+                break;
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "record":
+                recordPath = value;
+                break;
+            case "replay":
+                replayPath = value;
+                break;
+            case "think":
+                thinkDuration = DurationModel.parse(value);
+                break;
+            case "hesitate":
+                hesitateDuration = DurationModel.parse(value);
+                break;
+            case "eat":
+                eatDuration = DurationModel.parse(value);
+                break;
+            case "short-pause":
+                if (!value.equals("park") && !value.equals("spin")) {
+                    throw new IllegalArgumentException("Unknown short pause: " + value + " (expected park or spin)");
+                }
+                shortPause = value;
+                break;
+            case "zero-sleep":
+                zeroSleep = parseBoolean(key, value);
+                break;
+            case "starvation-threshold":
+                starvationThresholdNanos = parseNanos(value, TimeUnit.MILLISECONDS);
+                break;
+            case "stats-interval":
+                statsIntervalNanos = parseNanos(value, TimeUnit.SECONDS);
+                break;
+            case "latency":
+                if (!value.equals("off") && !value.equals("global") && !value.equals("table") && !value.equals("philosopher")) {
+                    throw new IllegalArgumentException("Unknown latency detail: " + value + " (expected off, global, table or philosopher)");
+                }
+                latencyDetail = value;
+                break;
+            case "latency-interval":
+                latencyIntervalNanos = parseNanos(value, TimeUnit.SECONDS);
+                break;
+            case "jmx":
+                jmx = parseBoolean(key, value);
+                break;
+            case "metrics-port":
+                metricsPort = Integer.parseInt(value);
+                break;
+            case "log":
+                if (!value.equals("async") && !value.equals("console") && !value.equals("silent")) {
+                    throw new IllegalArgumentException("Unknown log mode: " + value + " (expected async, console or silent)");
+                }
+                logMode = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + key);
+        }
+    }
+
+    // Boolean.parseBoolean would read a typo such as "ture" as false
+    private static boolean parseBoolean(String key, String value) {
+        if (!value.equals("true") && !value.equals("false")) {
+            throw new IllegalArgumentException(key + " must be true or false, got: " + value);
+        }
+        return value.equals("true");
+    }
+
+    // Accepts 800ns, 50us, 250ms, 30s or 2m; a bare number is taken in bareUnit
+    static long parseNanos(String value, TimeUnit bareUnit) {
+        String[] suffixes = {"ns", "us", "ms", "s", "m"};
+        TimeUnit[] units = {TimeUnit.NANOSECONDS, TimeUnit.MICROSECONDS, TimeUnit.MILLISECONDS, TimeUnit.SECONDS, TimeUnit.MINUTES};
+        for (int i = 0; i < suffixes.length; i++) {
+            if (value.endsWith(suffixes[i])) {
+                return units[i].toNanos(Long.parseLong(value.substring(0, value.length() - suffixes[i].length())));
+            }
+        }
+        return bareUnit.toNanos(Long.parseLong(value));
+    }
+
+    private void validate() {
+        if (tables < 1) {
+            throw new IllegalArgumentException("tables must be at least 1");
+        }
+        if (seatsPerTable < 2) {
+            throw new IllegalArgumentException("seats must be at least 2 (a philosopher needs two forks)");
+        }
+        if (overflowCapacity < 2) {
+            throw new IllegalArgumentException("overflow-capacity must be at least 2");
+        }
+        if ((long) tables * seatsPerTable > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("tables * seats exceeds the number of philosopher ids");
+        }
+        if (overflowMaxCapacity != 0 && overflowMaxCapacity < overflowCapacity) {
+            throw new IllegalArgumentException("overflow-max-capacity must be at least overflow-capacity");
+        }
+        if (overflowTables < 1 || (long) tables + overflowTables > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("overflow-tables must be at least 1");
+        }
+        if (durationMillis < 0) {
+            throw new IllegalArgumentException("duration must not be negative");
+        }
+        if (tryLockTimeoutNanos < 0 || backoffMinNanos < 1 || backoffMaxNanos < backoffMinNanos) {
+            throw new IllegalArgumentException("backoff needs trylock-timeout >= 0 and 0 < backoff-min <= backoff-max");
+        }
+        for (int tableId = 1; tableId <= tables + overflowTables; tableId++) {
+            int seats = tableId <= tables ? seatsPerTable : overflowCapacity;
+            int permits = getWaiterPermits(tableId, seats);
+            if (permits < 1 || permits >= seats) {
+                throw new IllegalArgumentException("waiter permits for table " + tableId + " must be between 1 and " + (seats - 1));
+            }
+        }
+        if (starvationThresholdNanos < 1 || statsIntervalNanos < 0) {
+            throw new IllegalArgumentException("starvation-threshold must be positive and stats-interval not negative");
+        }
+        if (metricsPort < 0 || metricsPort > 65535) {
+            throw new IllegalArgumentException("metrics-port must be between 0 (off) and 65535");
+        }
+        if (latencyIntervalNanos < 0) {
+            throw new IllegalArgumentException("latency-interval must not be negative");
+        }
+        if (executionMode == ExecutionMode.VIRTUAL && !ExecutionMode.virtualThreadsAvailable()) {
+            throw new IllegalArgumentException("threads=virtual needs Java 21 or newer (running on " + System.getProperty("java.version") + ")");
+        }
+        AcquisitionStrategy acquisitionStrategy = AcquisitionStrategy.create(this); // Reject an unknown strategy before any thread starts
+        // A deadlock-free strategy has nothing to detect, and its victims would be moved to forks the
+        // strategy was never seated at
+        if (!acquisitionStrategy.needsDeadlockDetection() && !getDeadlockDetector(acquisitionStrategy).equals("off")) {
+            throw new IllegalArgumentException("the " + strategy + " strategy cannot deadlock; use --detector=auto or off");
+        }
+        if (!engine.equals("threads")) {
+            if (!strategy.equals("left-right") && !strategy.equals("ordered")) {
+                throw new IllegalArgumentException("the " + engine + " engine supports the left-right and ordered strategies");
+            }
+            if (getDeadlockDetector(acquisitionStrategy).equals("heuristic")) {
+                throw new IllegalArgumentException("the " + engine + " engine detects deadlocks with the graph detector only");
+            }
+            if (recordPath != null || replayPath != null) {
+                throw new IllegalArgumentException("record and replay need the threads engine");
+            }
+            if (jmx || metricsPort != 0) {
+                throw new IllegalArgumentException("jmx and metrics-port need the threads engine");
+            }
+            if (forkLayout != ForkLayout.COMPACT) {
+                throw new IllegalArgumentException("fork-layout needs the threads engine");
+            }
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be at least 1");
+            }
+            if (engine.equals("discrete-event")
+                    && getThinkDuration().meanNanos() == 0 && getHesitateDuration().meanNanos() == 0 && getEatDuration().meanNanos() == 0) {
+                throw new IllegalArgumentException("the discrete-event engine needs a phase that takes time, or virtual time never moves");
+            }
+        }
+    }
+
+    public static String usage() {
+        return "Usage: java DiningPhilosophersSimulation [--config=file.properties] [--key=value ...]\n"
+                + "  --tables=N              number of dining tables (default 5)\n"
+                + "  --seats=N               philosophers and forks per table (default 5)\n"
+                + "  --overflow-capacity=N   seats the overflow table starts with (default 5)\n"
+                + "  --overflow-max-capacity=N  seats it may grow to; later victims stay at their table\n"
+                + "                          (default tables * seats)\n"
+                + "  --overflow-tables=N     overflow tables opened on demand as victims arrive (default 1)\n"
+                + "  --overflow-placement=P  least-loaded or hash (by source table) (default least-loaded)\n"
+                + "  --duration=T            run time, e.g. 500ms, 30s, 2m; bare numbers are seconds (default 100s)\n"
+                + "  --threads=MODE          platform or virtual (default platform; virtual needs Java 21)\n"
+                + "  --fork=TYPE             lock (ReentrantLock + Condition) or atomic (CAS state word) (default lock)\n"
+                + "  --fork-layout=L         threads: compact (forks back to back) or padded (each fork's state on cache\n"
+                + "                          lines of its own, against false sharing between neighbours) (default compact)\n"
+                + "  --strategy=NAME         fork acquisition: left-right, ordered, chandy-misra, waiter or backoff (default left-right)\n"
+                + "  --waiter-permits=N      philosophers the waiter admits per table (default seats - 1)\n"
+                + "  --waiter-permits.ID=N   the same for table ID only\n"
+                + "  --trylock-timeout=T     backoff: how long to wait for each fork before giving up, 0 = don't wait (default 0)\n"
+                + "  --backoff-min=T         backoff: first pause after a failed attempt (default 50us)\n"
+                + "  --backoff-max=T         backoff: the pause doubles up to this cap (default 10ms)\n"
+                + "  --backoff-jitter=BOOL   backoff: pause a random time up to the current step (default true)\n"
+                + "  --detector=MODE         deadlock detector: auto (graph, only if the strategy can deadlock), graph\n"
+                + "                          (wait-for graph checked as each philosopher starts to wait), heuristic\n"
+                + "                          (a philosopher kept waiting 190 ms at an idle table reports it) or off;\n"
+                + "                          graph and heuristic need a strategy that can deadlock, i.e. left-right\n"
+                + "                          (default auto)\n"
+                + "  --log=MODE              async, console or silent (default async)\n"
+                + "  --engine=NAME           threads (one thread per philosopher), work-stealing (state machines on\n"
+                + "                          a ForkJoinPool) or discrete-event (one thread, virtual time; --duration\n"
+                + "                          is simulated time) (default threads). The last two are restricted:\n"
+                + "                          left-right or ordered only, the graph detector only, no overflow tables\n"
+                + "                          (a deadlock victim backs off at its own table), no record/replay, jmx,\n"
+                + "                          metrics-port or fork-layout\n"
+                + "  --parallelism=N         work-stealing: pool size (default available processors)\n"
+                + "  --seed=N                seed every philosopher's random stream is derived from; repeats a\n"
+                + "                          discrete-event run exactly (default from the clock, printed at the end)\n"
+                + "  --record=FILE           threads: write the order each fork was picked up in, with the seed\n"
+                + "  --replay=FILE           threads: hold philosophers to a recorded order (and its seed)\n"
+                + "  --think=MODEL           how long a philosopher thinks: zero, constant:D, uniform:MAX, exponential:MEAN\n"
+                + "                          or pareto:MIN[:ALPHA] (heavy tail, ALPHA default 1.5); bare durations are\n"
+                + "                          milliseconds (default uniform:100ms)\n"
+                + "  --hesitate=MODEL        pause before reaching for the forks (default uniform:40ms)\n"
+                + "  --eat=MODEL             how long a meal lasts (default uniform:50ms)\n"
+                + "  --short-pause=MODE      threads: wait out pauses under 1 ms with park (LockSupport.parkNanos) or spin\n"
+                + "                          (busy-wait) (default park)\n"
+                + "  --zero-sleep=BOOL       no think, hesitate or eat time at all: philosophers contend for forks flat\n"
+                + "                          out (default false)\n"
+                + "  --starvation-threshold=T  a philosopher hungry for longer is reported as starving; bare numbers\n"
+                + "                          are milliseconds (default 1000ms)\n"
+                + "  --stats-interval=T      print meals, Jain's fairness index and starvation alerts this often while\n"
+                + "                          running (simulated time for discrete-event), 0 = only at the end (default 0)\n"
+                + "  --latency=DETAIL        record percentiles of hungry-to-both-forks, blocked-on-a-fork and eating\n"
+                + "                          times: off, global, table (also per table) or philosopher (also per\n"
+                + "                          philosopher) (default off)\n"
+                + "  --latency-interval=T    print the percentiles so far this often (simulated time for\n"
+                + "                          discrete-event), 0 = only at the end (default 0)\n"
+                + "  --jmx=BOOL              threads: register MBeans for tables, forks, overflow tables and the\n"
+                + "                          deadlock detector under diningphilosophers:* (default false)\n"
+                + "  --metrics-port=N        threads: serve Prometheus/OpenMetrics text at http://127.0.0.1:N/metrics,\n"
+                + "                          with fork wait histograms per table; 0 = off (default 0)\n"
+                + "The properties file uses the same keys without the leading dashes.";
+    }
+
+    public int getTables() {
+        return tables;
+    }
+
+    public int getSeatsPerTable() {
+        return seatsPerTable;
+    }
+
+    public int getOverflowCapacity() {
+        return overflowCapacity;
+    }
+
+    public int getOverflowMaxCapacity() {
+        return overflowMaxCapacity == 0 ? Math.max(tables * seatsPerTable, overflowCapacity) : overflowMaxCapacity;
+    }
+
+    public int getOverflowTables() {
+        return overflowTables;
+    }
+
+    public String getOverflowPlacement() {
+        return overflowPlacement;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public ForkType getForkType() {
+        return forkType;
+    }
+
+    public ForkLayout getForkLayout() {
+        return forkLayout;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public int getWaiterPermits(int tableId, int seats) {
+        Integer perTable = waiterPermitsByTable.get(tableId);
+        if (perTable != null) {
+            return perTable;
+        }
+        return waiterPermits > 0 ? waiterPermits : seats - 1;
+    }
+
+    public long getTryLockTimeoutNanos() {
+        return tryLockTimeoutNanos;
+    }
+
+    public long getBackoffMinNanos() {
+        return backoffMinNanos;
+    }
+
+    public long getBackoffMaxNanos() {
+        return backoffMaxNanos;
+    }
+
+    public boolean isBackoffJitter() {
+        return backoffJitter;
+    }
+
+    // graph, heuristic or off
+    public String getDeadlockDetector(AcquisitionStrategy acquisitionStrategy) {
+        if (detector.equals("auto")) {
+            return acquisitionStrategy.needsDeadlockDetection() ? "graph" : "off";
+        }
+        return detector;
+    }
+
+    public String getLogMode() {
+        return logMode;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getRecordPath() {
+        return recordPath;
+    }
+
+    public String getReplayPath() {
+        return replayPath;
+    }
+
+    public DurationModel getThinkDuration() {
+        return zeroSleep ? PhaseDurations.ZERO : thinkDuration;
+    }
+
+    public DurationModel getHesitateDuration() {
+        return zeroSleep ? PhaseDurations.ZERO : hesitateDuration;
+    }
+
+    public DurationModel getEatDuration() {
+        return zeroSleep ? PhaseDurations.ZERO : eatDuration;
+    }
+
+    public long getStarvationThresholdNanos() {
+        return starvationThresholdNanos;
+    }
+
+    public long getStatsIntervalNanos() {
+        return statsIntervalNanos;
+    }
+
+    // off, global, table or philosopher
+    public String getLatencyDetail() {
+        return latencyDetail;
+    }
+
+    public long getLatencyIntervalNanos() {
+        return latencyIntervalNanos;
+    }
+
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    // park or spin
+    public String getShortPause() {
+        return shortPause;
+    }
+}
@@ -0,0 +1,261 @@
+package diningphilosophers;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+// A read-only MBean whose attributes are suppliers. Standard MBeans would need a public interface
+// per bean; this keeps the metrics package-private like everything else here. Every attribute is
+// computed when it is read, from counters the philosophers keep anyway, so an idle JConsole costs
+// the run nothing.
+class MetricsMBean implements DynamicMBean {
+    private final String description;
+    private final Map<String, Supplier<?>> values = new LinkedHashMap<>();
+    private final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+
+    public MetricsMBean(String description) {
+        this.description = description;
+    }
+
+    public MetricsMBean add(String name, Class<?> type, String description, Supplier<?> value) {
+        values.put(name, value);
+        attributes.add(new MBeanAttributeInfo(name, type.getName(), description, true, false, false));
+        return this;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<?> value = values.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<?> value = values.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value.get()));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "No operations: " + actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return new MBeanInfo(getClass().getName(), description, attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
+
+// Registers the threaded engine's tables, forks, overflow tables and deadlock detector under the
+// diningphilosophers domain, for JConsole or VisualVM to watch a long run:
+//   type=Table,id=N            meals, meals/s, heartbeat age, deadlocks, evictions, fork holders and waiters
+//   type=Fork,table=N,id=M     holder, waiters, lock queue length (only while forks <= MAX_FORK_BEANS)
+//   type=OverflowTable,id=N    the table's own figures plus occupancy and migrations, as tables open
+//   type=DeadlockDetector      detections, evictions, suspects and stranded victims
+class SimulationMBeans {
+    static final String DOMAIN = "diningphilosophers";
+    private static final int MAX_FORK_BEANS = 1024; // Past this, fork figures are only in the Table beans
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    // Meals per second between two reads, and how long the heartbeat has stood still as far as the
+    // reads can tell; kept by the reader so that philosophers never pay for timestamps
+    private static final class Sampler {
+        private long lastMeals;
+        private long lastMealsAt = System.nanoTime();
+        private long lastHeartbeat = -1;
+        private long heartbeatMovedAt = System.nanoTime();
+
+        synchronized double mealsPerSecond(long meals) {
+            long now = System.nanoTime();
+            double rate = (meals - lastMeals) * 1e9 / Math.max(1, now - lastMealsAt);
+            lastMeals = meals;
+            lastMealsAt = now;
+            return rate;
+        }
+
+        synchronized long heartbeatAgeMillis(long heartbeat) {
+            long now = System.nanoTime();
+            if (heartbeat != lastHeartbeat) {
+                lastHeartbeat = heartbeat;
+                heartbeatMovedAt = now;
+            }
+            return (now - heartbeatMovedAt) / 1_000_000;
+        }
+    }
+
+    public void register(Table[] tables, OverflowPool overflowTables, DeadlockDetector deadlockDetector, WaitForGraph waitForGraph) {
+        int forks = 0;
+        for (Table table : tables) {
+            forks += table.getForks().length;
+        }
+        for (Table table : tables) {
+            register("type=Table,id=" + table.getTableId(), tableBean(table, "Dining table " + table.getTableId()));
+            if (forks <= MAX_FORK_BEANS) {
+                for (Fork fork : table.getForks()) {
+                    register("type=Fork,table=" + table.getTableId() + ",id=" + fork.getId(), forkBean(fork));
+                }
+            }
+        }
+        // Overflow tables are created on the evicting thread, in the middle of resolving a deadlock; a
+        // bean that cannot be registered is reported rather than thrown at that philosopher or detector
+        overflowTables.onTableCreated(table -> {
+            try {
+                register("type=OverflowTable,id=" + table.getTableId(), overflowBean(table));
+            } catch (IllegalStateException e) {
+                System.out.println(e.getMessage() + ": " + e.getCause());
+            }
+        });
+        register("type=DeadlockDetector", detectorBean(tables, overflowTables, deadlockDetector, waitForGraph));
+    }
+
+    private MetricsMBean tableBean(Table table, String description) {
+        Sampler sampler = new Sampler();
+        return new MetricsMBean(description)
+                .add("TableId", int.class, "Table id", table::getTableId)
+                .add("Meals", long.class, "Meals eaten at this table", table::getMeals)
+                .add("MealsPerSecond", double.class, "Meals per second since this attribute was last read",
+                        () -> sampler.mealsPerSecond(table.getMeals()))
+                .add("Heartbeat", long.class, "Philosopher activities at this table", table::getHeartbeat)
+                .add("HeartbeatAgeMillis", long.class, "Time since a read last saw the heartbeat move",
+                        () -> sampler.heartbeatAgeMillis(table.getHeartbeat()))
+                .add("DeadlocksDetected", long.class, "Deadlocks detected at this table", table::getDeadlocks)
+                .add("Evictions", long.class, "Deadlock victims moved to an overflow table", table::getEvictions)
+                .add("ForkHolders", int[].class, "Philosopher holding each fork, -1 if none", () -> forkFigures(table, Fork::getOwner))
+                .add("ForkWaiters", int[].class, "Philosophers blocked on each fork", () -> forkFigures(table, Fork::getWaiting))
+                .add("LockQueueLength", int.class, "Threads queued for fork locks at this table",
+                        () -> sum(forkFigures(table, Fork::getLockQueueLength)))
+                .add("WaiterPermitsAvailable", int.class, "Free permits of the waiter strategy's semaphore",
+                        () -> table.getWaiter().availablePermits());
+    }
+
+    private static int[] forkFigures(Table table, ToIntFunction<Fork> figure) {
+        Fork[] forks = table.getForks();
+        int[] figures = new int[forks.length];
+        for (int i = 0; i < forks.length; i++) {
+            figures[i] = figure.applyAsInt(forks[i]);
+        }
+        return figures;
+    }
+
+    private static int sum(int[] values) {
+        int total = 0;
+        for (int value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private static MetricsMBean forkBean(Fork fork) {
+        return new MetricsMBean(fork.toString())
+                .add("Holder", int.class, "Philosopher holding the fork, -1 if none", fork::getOwner)
+                .add("Available", boolean.class, "Whether nobody holds the fork", fork::isAvailable)
+                .add("Waiting", int.class, "Philosophers blocked waiting for the fork", fork::getWaiting)
+                .add("LockQueueLength", int.class, "Threads queued for the fork's lock (ReentrantLock.getQueueLength)",
+                        fork::getLockQueueLength);
+    }
+
+    private MetricsMBean overflowBean(OverflowTable table) {
+        return tableBean(table, "Overflow table " + table.getTableId())
+                .add("Seated", int.class, "Philosophers seated", table::getSeated)
+                .add("Capacity", int.class, "Seats allocated so far", table::getCapacity)
+                .add("MaxCapacity", int.class, "Seats the table may grow to", table::getMaxCapacity)
+                .add("Full", boolean.class, "Whether every seat is taken", table::isFull)
+                .add("TurnedAway", long.class, "Victims turned away because the table was full", table::getTurnedAway)
+                .add("ClaimRetries", long.class, "Seat claims retried after losing a CAS", table::getClaimRetries)
+                .add("Migrations", long.class, "Victims that have started eating here", table::getMigrations)
+                .add("MeanMigrationMicros", double.class, "Mean time from eviction to the victim switching to this table's forks",
+                        () -> table.getMigrations() == 0 ? 0.0 : table.getMigrationNanos() / 1000.0 / table.getMigrations());
+    }
+
+    private static MetricsMBean detectorBean(Table[] tables, OverflowPool overflowTables, DeadlockDetector deadlockDetector,
+            WaitForGraph waitForGraph) {
+        String mode = waitForGraph != null ? "graph" : deadlockDetector != null ? "heuristic" : "off";
+        return new MetricsMBean("Deadlock detection (" + mode + ")")
+                .add("Mode", String.class, "graph, heuristic or off", () -> mode)
+                .add("Detections", long.class, "Deadlocks detected at every table, overflow tables included",
+                        () -> total(tables, overflowTables, Table::getDeadlocks))
+                .add("Evictions", long.class, "Victims moved to an overflow table", () -> total(tables, overflowTables, Table::getEvictions))
+                .add("Stranded", long.class, "Victims kept at their table because every overflow table was full",
+                        overflowTables::getStranded)
+                .add("OverflowTablesOpen", int.class, "Overflow tables created so far", () -> overflowTables.getTables().size())
+                .add("MeanDetectionMicros", double.class, "Graph only: mean time to find a cycle",
+                        () -> waitForGraph == null || waitForGraph.getDetections() == 0 ? 0.0
+                                : waitForGraph.getDetectionNanos() / 1000.0 / waitForGraph.getDetections())
+                .add("SuspectsReported", long.class, "Heuristic only: stalls reported by waiting philosophers",
+                        () -> deadlockDetector == null ? 0L : deadlockDetector.getSuspectsReported())
+                .add("PendingSuspects", int.class, "Heuristic only: reports not yet checked",
+                        () -> deadlockDetector == null ? 0 : deadlockDetector.getPendingSuspects());
+    }
+
+    private static long total(Table[] tables, OverflowPool overflowTables, ToLongFunction<Table> figure) {
+        long total = 0;
+        for (Table table : tables) {
+            total += figure.applyAsLong(table);
+        }
+        for (OverflowTable table : overflowTables.getTables()) {
+            total += figure.applyAsLong(table);
+        }
+        return total;
+    }
+
+    private void register(String properties, MetricsMBean bean) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            server.registerMBean(bean, name);
+            synchronized (registered) {
+                registered.add(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register MBean " + properties, e);
+        }
+    }
+
+    public void unregister() {
+        synchronized (registered) {
+            for (ObjectName name : registered) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException e) {
+                    // Already gone
+                }
+            }
+            registered.clear();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package diningphilosophers;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+
+// What an engine that steps philosophers instead of giving each a thread must provide. Phase
+// durations are milliseconds of whatever clock the engine keeps, wall or virtual.
+interface PhaseScheduler {
+    // Runs the philosopher's next step once the phase has lasted this long
+    void after(long millis, SteppedPhilosopher philosopher);
+
+    // Runs the next step of a philosopher just handed a fork it was queued for
+    void resume(SteppedPhilosopher philosopher);
+
+    boolean isRunning();
+
+    // The engine's clock, for the meal statistics
+    long nowNanos();
+}
+
+// A philosopher as a state machine, THINKING -> HUNGRY -> EATING, with the same phases and fork
+// protocol as the threaded Philosopher. A step never blocks: a timed phase ends by asking the
+// scheduler for the next step, and a taken fork queues the philosopher on the fork as a
+// continuation that the fork's next putDown hands the fork to.
+//
+// Forks are taken left then right, or lower id first when leftFirst says so per philosopher. With
+// a wait-for graph, a philosopher about to queue for its second fork checks it first; if queueing
+// would close a cycle it puts its first fork down and goes back to thinking.
+//
+// Steps of one philosopher never overlap: the next is only ever requested by the current one or by
+// the fork hand-off, both of which publish the fields through the scheduler.
+class SteppedPhilosopher implements Runnable {
+    private enum State {
+        THINKING,
+        HUNGRY,
+        EATING
+    }
+
+    private final int id;
+    private final int tableId;
+    private final SteppedFork leftFork;
+    private final SteppedFork rightFork;
+    private final SteppedFork first;
+    private final SteppedFork second;
+    private final PhaseScheduler scheduler;
+    private final WaitForGraph waitForGraph; // Null unless the wait-for graph detector is active
+    private final SplittableRandom random; // This philosopher's own stream, see ForkSchedule.streamFor
+    private final PhaseDurations durations;
+    private long carryNanos; // Phase time below the scheduler's millisecond, added to the next phase
+    private State state = State.THINKING;
+    private boolean holdingFirst;
+    private boolean hungry; // Since the first attempt at the first fork, until both are held or given up
+    private long hungrySince;
+    private long blockedSince = -1; // Queued on a fork since then, or -1
+    private long eatingSince;
+    private long meals;
+    long dueTick; // Scratch space for the scheduler's timer
+
+    public SteppedPhilosopher(int id, int tableId, SteppedFork leftFork, SteppedFork rightFork, boolean leftFirst,
+            PhaseScheduler scheduler, WaitForGraph waitForGraph, SplittableRandom random, PhaseDurations durations) {
+        this.id = id;
+        this.tableId = tableId;
+        this.leftFork = leftFork;
+        this.rightFork = rightFork;
+        this.first = leftFirst ? leftFork : rightFork;
+        this.second = leftFirst ? rightFork : leftFork;
+        this.scheduler = scheduler;
+        this.waitForGraph = waitForGraph;
+        this.random = random;
+        this.durations = durations;
+        MealStats.seated(id, tableId);
+    }
+
+    public int getPhilosopherId() {
+        return id;
+    }
+
+    // Only read once the engine has stopped stepping
+    public long getMeals() {
+        return meals;
+    }
+
+    @Override
+    public void run() {
+        if (!scheduler.isRunning()) {
+            return;
+        }
+        switch (state) {
+            case THINKING:
+                log(EventType.THINKING);
+                state = State.HUNGRY;
+                scheduler.after(millis(durations.think(random) + durations.hesitate(random)), this); // Think, then hesitate
+                break;
+            case HUNGRY:
+                if (!hungry) {
+                    hungry = true;
+                    hungrySince = scheduler.nowNanos();
+                    MealStats.hungry(id, hungrySince);
+                }
+                if (!holdingFirst) {
+                    if (!take(first)) {
+                        return; // Resumed by the hand-off once the fork is ours
+                    }
+                    holdingFirst = true;
+                }
+                if (!holdingSecond()) {
+                    return;
+                }
+                hungry = false;
+                eatingSince = scheduler.nowNanos();
+                MealStats.doneWaiting(id, eatingSince);
+                Latency.record(LatencyPhase.ACQUIRE, id, tableId, eatingSince - hungrySince);
+                log(EventType.EATING);
+                state = State.EATING;
+                scheduler.after(millis(durations.eat(random)), this);
+                break;
+            case EATING:
+                Latency.record(LatencyPhase.EATING, id, tableId, scheduler.nowNanos() - eatingSince);
+                meals++;
+                MealStats.ate(id);
+                release(leftFork);
+                release(rightFork);
+                holdingFirst = false;
+                state = State.THINKING;
+                run();
+                break;
+        }
+    }
+
+    // Whole milliseconds for the scheduler. The remainder is carried rather than dropped, so sub-millisecond
+    // phases still add up and move the clock.
+    private long millis(long nanos) {
+        long total = nanos + carryNanos;
+        carryNanos = total % 1_000_000;
+        return total / 1_000_000;
+    }
+
+    // Once queued, the fork's next putDown may run this philosopher's next step on another worker, so
+    // everything that step reads is written before takeOrQueue
+    private boolean take(SteppedFork fork) {
+        if (fork.tryTake(id)) {
+            handedOver();
+        } else {
+            blockedSince = scheduler.nowNanos();
+            log(fork == leftFork ? EventType.WAITING_FOR_LEFT_FORK : EventType.WAITING_FOR_RIGHT_FORK);
+            if (!fork.takeOrQueue(this)) {
+                return false;
+            }
+            blockedSince = -1; // Put down in between, there was no wait after all
+        }
+        log(fork == leftFork ? EventType.PICKED_UP_LEFT_FORK : EventType.PICKED_UP_RIGHT_FORK);
+        return true;
+    }
+
+    // Ends the wait, if any, that the fork just taken was queued for
+    private void handedOver() {
+        if (blockedSince >= 0) {
+            Latency.record(LatencyPhase.BLOCKED, id, tableId, scheduler.nowNanos() - blockedSince);
+            blockedSince = -1;
+        }
+    }
+
+    // The only wait made while holding a fork, so the only one that can close a cycle
+    private boolean holdingSecond() {
+        if (second.getOwner() == id) {
+            if (waitForGraph != null) {
+                waitForGraph.endWait(id); // Handed over while queued
+            }
+            handedOver();
+            log(second == leftFork ? EventType.PICKED_UP_LEFT_FORK : EventType.PICKED_UP_RIGHT_FORK);
+            return true;
+        }
+        // The edge goes in whether or not the fork looks free: it can be taken before this philosopher
+        // queues, and a wait the graph cannot see is a cycle it cannot break
+        if (waitForGraph != null && waitForGraph.beginWait(id, second)) {
+            waitForGraph.endWait(id);
+            EventLog.record(-1, tableId, EventType.DEADLOCK_DETECTED);
+            release(first);
+            holdingFirst = false;
+            hungry = false;
+            MealStats.doneWaiting(id, scheduler.nowNanos());
+            state = State.THINKING;
+            scheduler.after(0, this);
+            return false;
+        }
+        if (take(second)) {
+            if (waitForGraph != null) {
+                waitForGraph.endWait(id);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void release(SteppedFork fork) {
+        fork.putDown(id);
+        log(fork == leftFork ? EventType.PUT_DOWN_LEFT_FORK : EventType.PUT_DOWN_RIGHT_FORK);
+    }
+
+    private void log(EventType type) {
+        EventLog.record(id, tableId, type);
+    }
+}
+
+// A fork whose waiters are continuations rather than threads. The monitor only guards the owner
+// and the queue for a few instructions; nobody ever waits on it. Not a Fork, whose contract
+// includes blocking pick-ups; the wait-for graph only needs to know who holds it.
+class SteppedFork implements Owned {
+    private final int id;
+    private final PhaseScheduler scheduler;
+    private final ArrayDeque<SteppedPhilosopher> waiters = new ArrayDeque<>();
+    private volatile int owner = NOBODY; // Read without the monitor by the wait-for graph
+
+    public SteppedFork(int id, PhaseScheduler scheduler) {
+        this.id = id;
+        this.scheduler = scheduler;
+    }
+
+    // True if the fork is now held by the philosopher, including when it was handed over earlier
+    synchronized boolean tryTake(int philosopherId) {
+        if (owner == philosopherId) {
+            return true;
+        }
+        if (owner == NOBODY) {
+            owner = philosopherId;
+            return true;
+        }
+        return false;
+    }
+
+    // As tryTake, but queues the philosopher for a hand-over when the fork is held
+    synchronized boolean takeOrQueue(SteppedPhilosopher philosopher) {
+        if (tryTake(philosopher.getPhilosopherId())) {
+            return true;
+        }
+        waiters.add(philosopher);
+        return false;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public int getOwner() {
+        return owner;
+    }
+
+    // Hands the fork straight to the first queued philosopher and schedules its next step
+    public void putDown(int philosopherId) {
+        SteppedPhilosopher next;
+        synchronized (this) {
+            next = waiters.poll();
+            owner = next == null ? NOBODY : next.getPhilosopherId();
+        }
+        if (next != null) {
+            scheduler.resume(next);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Fork " + id;
+    }
+}
@@ -0,0 +1,68 @@
+package diningphilosophers;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// What the wait-for graph needs to know about a fork: who holds it. Forks and the stepped engines'
+// forks both have an owner, though only the former can be waited on by a blocked thread.
+interface Owned {
+    int NOBODY = -1;
+
+    // Id of the philosopher holding the fork, or NOBODY
+    int getOwner();
+}
+
+// Wait-for graph over philosophers: an edge runs from a waiting philosopher to the owner of the fork
+// it waits for. Every philosopher waits for at most one fork, so each node has at most one outgoing
+// edge and a new wait can only close the cycle that leads back to the waiter itself. That makes the
+// check a walk along owner -> waited-for fork -> owner links, bounded by the number of philosophers,
+// run by the philosopher about to wait instead of by a thread sweeping the tables.
+//
+// The walk reads ownership and waits racily. A fork released mid-walk can make it report a cycle
+// that has just dissolved; the victim then only gives its forks back and tries again. A cycle is
+// never missed: the last philosopher to join it sees every other edge already in place.
+class WaitForGraph {
+    private final AtomicReferenceArray<Owned> waitingOn;
+    private final LongAdder detections = new LongAdder();
+    private final LongAdder detectionNanos = new LongAdder();
+
+    public WaitForGraph(int philosophers) {
+        this.waitingOn = new AtomicReferenceArray<>(philosophers);
+    }
+
+    // Records that the philosopher is about to wait for the fork. Returns true if that wait closes a
+    // cycle; the caller is then the victim and must not wait, but still has to call endWait.
+    public boolean beginWait(int philosopherId, Owned fork) {
+        long start = System.nanoTime();
+        waitingOn.set(philosopherId, fork);
+        Owned next = fork;
+        for (int steps = 0; steps < waitingOn.length(); steps++) {
+            int owner = next.getOwner();
+            if (owner == philosopherId) {
+                detections.increment();
+                detectionNanos.add(System.nanoTime() - start);
+                return true;
+            }
+            if (owner == Owned.NOBODY || owner >= waitingOn.length()) {
+                return false;
+            }
+            next = waitingOn.get(owner);
+            if (next == null) {
+                return false; // The owner is eating or about to, the chain ends there
+            }
+        }
+        return false; // Longer than the graph: a cycle not through this philosopher, whose last member will catch it
+    }
+
+    public void endWait(int philosopherId) {
+        waitingOn.set(philosopherId, null);
+    }
+
+    public long getDetections() {
+        return detections.sum();
+    }
+
+    public long getDetectionNanos() {
+        return detectionNanos.sum();
+    }
+}
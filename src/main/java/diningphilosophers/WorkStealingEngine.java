@@ -0,0 +1,185 @@
+package diningphilosophers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs SteppedPhilosophers on a fixed ForkJoinPool instead of one thread each. A fork hand-off
+// submits the next step straight to the pool, so a million philosophers cost a million small
+// objects rather than a million stacks.
+//
+// Timed phases go into a hashed timing wheel of 1 ms slots rather than a ScheduledExecutorService,
+// whose single locked heap would cap throughput long before the pool does. One ticker thread empties
+// each slot as it comes due.
+//
+// Every step that is ready to run, due from the wheel, handed a fork or with a zero-length phase,
+// joins one FIFO queue, and the pool only gets interchangeable tasks that each run whichever step is
+// at its head. A worker runs the tasks it submitted itself before anything from outside, so handing
+// it the philosopher directly would let one with zero-length phases reschedule itself on its worker
+// ahead of everyone else for as long as the run lasts.
+class WorkStealingEngine implements PhaseScheduler {
+    private static final int WHEEL_SLOTS = 1024; // Longer phases go round the wheel more than once
+
+    private final SimulationConfig config;
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<SteppedPhilosopher>[] wheel;
+    private final ConcurrentLinkedQueue<SteppedPhilosopher> ready = new ConcurrentLinkedQueue<>();
+    private final Runnable runNext = this::runNext;
+    private final Thread ticker;
+    private volatile long currentTick; // The ticker has started emptying the slot before this one
+    private final WaitForGraph waitForGraph;
+    private final List<SteppedPhilosopher> philosophers = new ArrayList<>();
+    private final PhilosopherStats stats;
+    private final LatencyRecorder latency; // Null unless latency recording is on
+    private volatile boolean running = true;
+    private long stoppedAt;
+
+    public WorkStealingEngine(SimulationConfig config) {
+        this.config = config;
+        this.pool = new ForkJoinPool(config.getParallelism(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        ConcurrentLinkedQueue<SteppedPhilosopher>[] slots = new ConcurrentLinkedQueue[WHEEL_SLOTS];
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.wheel = slots;
+        this.ticker = new Thread(this::tick, "phase-timer");
+        ticker.setDaemon(true);
+        boolean graph = config.getDeadlockDetector(AcquisitionStrategy.create(config)).equals("graph");
+        this.waitForGraph = graph ? new WaitForGraph(config.getTables() * config.getSeatsPerTable()) : null;
+        this.stats = new PhilosopherStats(config.getTables() * config.getSeatsPerTable(), config.getStarvationThresholdNanos());
+        this.latency = LatencyRecorder.forDetail(config.getLatencyDetail(), config.getTables(), config.getTables() * config.getSeatsPerTable());
+    }
+
+    // Runs for the configured duration and returns the number of meals eaten
+    public long run() throws InterruptedException {
+        int seats = config.getSeatsPerTable();
+        boolean ordered = config.getStrategy().equals("ordered");
+        PhaseDurations durations = PhaseDurations.from(config);
+        MealStats.install(stats);
+        Latency.install(latency);
+        for (int tableId = 1; tableId <= config.getTables(); tableId++) {
+            SteppedFork[] forks = new SteppedFork[seats];
+            for (int i = 0; i < seats; i++) {
+                forks[i] = new SteppedFork(i, this);
+            }
+            for (int i = 0; i < seats; i++) {
+                SteppedFork left = forks[i];
+                SteppedFork right = forks[(i + 1) % seats];
+                boolean leftFirst = !ordered || left.getId() < right.getId();
+                SteppedPhilosopher philosopher = new SteppedPhilosopher(i + (tableId - 1) * seats, tableId, left, right, leftFirst,
+                        this, waitForGraph, ForkSchedule.streamFor(config.getSeed(), i + (tableId - 1) * seats), durations);
+                philosophers.add(philosopher);
+                schedule(philosopher);
+            }
+        }
+
+        ticker.start();
+        Thread reporter = config.getStatsIntervalNanos() > 0 ? stats.startReporter(config.getStatsIntervalNanos()) : null;
+        Thread latencyReporter = latency != null && config.getLatencyIntervalNanos() > 0
+                ? latency.startReporter(config.getLatencyIntervalNanos()) : null;
+        Thread.sleep(config.getDurationMillis());
+        stoppedAt = System.nanoTime();
+        running = false;
+        if (reporter != null) {
+            reporter.interrupt();
+        }
+        if (latencyReporter != null) {
+            latencyReporter.interrupt();
+        }
+        ticker.interrupt();
+        ticker.join();
+        pool.shutdownNow();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+        long meals = 0;
+        for (SteppedPhilosopher philosopher : philosophers) {
+            meals += philosopher.getMeals();
+        }
+        return meals;
+    }
+
+    // As of the moment the run stopped, so philosophers cut off mid-wait do not look starved
+    public FairnessSnapshot getFairness() {
+        return stats.snapshot(stoppedAt);
+    }
+
+    public LatencyRecorder getLatency() {
+        return latency;
+    }
+
+    public long getDeadlockDetections() {
+        return waitForGraph == null ? 0 : waitForGraph.getDetections();
+    }
+
+    @Override
+    public void after(long millis, SteppedPhilosopher philosopher) {
+        if (!running) {
+            return;
+        }
+        if (millis == 0) {
+            schedule(philosopher);
+        } else {
+            long due = currentTick + millis;
+            philosopher.dueTick = due;
+            ConcurrentLinkedQueue<SteppedPhilosopher> slot = wheel[(int) (due % WHEEL_SLOTS)];
+            slot.add(philosopher);
+            // currentTick may have been stale, and the ticker may already have emptied the slot or be
+            // past the point of seeing this philosopher in it, which would leave it there for a whole
+            // turn of the wheel. Whichever of us takes it out runs it.
+            if (currentTick > due && slot.remove(philosopher)) {
+                schedule(philosopher);
+            }
+        }
+    }
+
+    @Override
+    public void resume(SteppedPhilosopher philosopher) {
+        schedule(philosopher);
+    }
+
+    private void schedule(SteppedPhilosopher philosopher) {
+        ready.add(philosopher);
+        pool.execute(runNext);
+    }
+
+    // One task per scheduled step, so there is always a step for it unless the run was cut short
+    private void runNext() {
+        SteppedPhilosopher philosopher = ready.poll();
+        if (philosopher != null) {
+            philosopher.run();
+        }
+    }
+
+    @Override
+    public long nowNanos() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        for (long tick = 0; running && !Thread.currentThread().isInterrupted(); tick++) {
+            long wait = start + TimeUnit.MILLISECONDS.toNanos(tick) - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            currentTick = tick + 1; // Philosophers scheduled from now on land in later slots
+            ConcurrentLinkedQueue<SteppedPhilosopher> slot = wheel[(int) (tick % WHEEL_SLOTS)];
+            int pending = slot.size() + 1; // Bounds the loop: re-added philosophers are not seen again this tick
+            for (SteppedPhilosopher philosopher; pending-- > 0 && (philosopher = slot.poll()) != null; ) {
+                if (philosopher.dueTick > tick) {
+                    slot.add(philosopher); // Due on a later turn of the wheel
+                    continue;
+                }
+                schedule(philosopher);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package diningphilosophers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class DurationModelTest {
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void bareNumbersAreMilliseconds() {
+        assertEquals(5 * MILLI, DurationModel.parse("constant:5").meanNanos());
+        assertEquals(5 * MILLI, DurationModel.parse("constant:5ms").meanNanos());
+        assertEquals(TimeUnit.SECONDS.toNanos(2), DurationModel.parse("constant:2s").meanNanos());
+    }
+
+    @Test
+    void meansFollowTheModel() {
+        assertEquals(0, DurationModel.parse("zero").meanNanos());
+        assertEquals(0, DurationModel.parse("constant:0").meanNanos());
+        assertEquals(50 * MILLI, DurationModel.parse("uniform:100ms").meanNanos());
+        assertEquals(20 * MILLI, DurationModel.parse("exponential:20ms").meanNanos());
+        assertEquals(30 * MILLI, DurationModel.parse("pareto:10ms").meanNanos());
+        assertEquals(20 * MILLI, DurationModel.parse("pareto:10ms:2").meanNanos());
+        assertEquals(Long.MAX_VALUE, DurationModel.parse("pareto:10ms:1").meanNanos());
+    }
+
+    @Test
+    void drawsStayInRange() {
+        SplittableRandom random = new SplittableRandom(42);
+        DurationModel uniform = DurationModel.parse("uniform:10ms");
+        DurationModel pareto = DurationModel.parse("pareto:10ms:0.5");
+        for (int i = 0; i < 10_000; i++) {
+            long draw = uniform.nextNanos(random);
+            assertTrue(draw >= 0 && draw < 10 * MILLI, "uniform drew " + draw);
+            draw = pareto.nextNanos(random);
+            assertTrue(draw >= 10 * MILLI && draw <= TimeUnit.HOURS.toNanos(1), "pareto drew " + draw);
+        }
+    }
+
+    @Test
+    void specIsKeptForDisplay() {
+        assertEquals("exponential:20ms", DurationModel.parse("exponential:20ms").toString());
+    }
+
+    @Test
+    void badSpecsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> DurationModel.parse("gaussian:5ms"));
+        assertThrows(IllegalArgumentException.class, () -> DurationModel.parse("uniform"));
+        assertThrows(IllegalArgumentException.class, () -> DurationModel.parse("uniform:0"));
+        assertThrows(IllegalArgumentException.class, () -> DurationModel.parse("exponential:0"));
+        assertThrows(IllegalArgumentException.class, () -> DurationModel.parse("pareto:10ms:0"));
+        assertThrows(IllegalArgumentException.class, () -> DurationModel.parse("constant:-1"));
+    }
+}
@@ -0,0 +1,54 @@
+package diningphilosophers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class FairnessSnapshotTest {
+    private static final long THRESHOLD = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void equalMealsAreFair() {
+        FairnessSnapshot snapshot = new FairnessSnapshot(THRESHOLD);
+        for (int id = 0; id < 5; id++) {
+            snapshot.add(id, 0, 7, 0, 0, 0, 0);
+        }
+        assertEquals(35, snapshot.getMeals());
+        assertEquals(1.0, snapshot.getFairness(), 1e-9);
+    }
+
+    @Test
+    void oneEaterAloneScoresOneOverN() {
+        FairnessSnapshot snapshot = new FairnessSnapshot(THRESHOLD);
+        snapshot.add(0, 0, 12, 0, 0, 0, 0);
+        for (int id = 1; id < 4; id++) {
+            snapshot.add(id, 0, 0, 0, 0, 0, 0);
+        }
+        assertEquals(0.25, snapshot.getFairness(), 1e-9);
+    }
+
+    @Test
+    void nobodyEatingCountsAsFair() {
+        FairnessSnapshot snapshot = new FairnessSnapshot(THRESHOLD);
+        snapshot.add(0, 0, 0, 0, 0, 0, 0);
+        snapshot.add(1, 0, 0, 0, 0, 0, 0);
+        assertEquals(1.0, snapshot.getFairness(), 1e-9);
+    }
+
+    @Test
+    void tablesAreScoredOnTheirOwn() {
+        FairnessSnapshot snapshot = new FairnessSnapshot(THRESHOLD);
+        snapshot.add(0, 0, 4, 0, 0, 0, 0);
+        snapshot.add(1, 0, 4, 0, 0, 0, 0);
+        snapshot.add(2, 1, 8, 0, 0, 0, 0);
+        snapshot.add(3, 1, 0, 0, 0, 0, 2 * THRESHOLD);
+        assertEquals(1.0, snapshot.getTables().get(0).getFairness(), 1e-9);
+        assertEquals(0.5, snapshot.getTables().get(1).getFairness(), 1e-9);
+        // (16)^2 / (4 * (16 + 16 + 64)) = 2/3
+        assertEquals(2.0 / 3, snapshot.getFairness(), 1e-9);
+        assertEquals(1, snapshot.getStarvingNow());
+        assertEquals(2 * THRESHOLD, snapshot.getMaxHungryNanos());
+    }
+}
@@ -0,0 +1,111 @@
+package diningphilosophers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    private static final long MAX = (1L << 36) - 1;
+
+    // The bucket a value lands in, reported as its highest equivalent value
+    private static long bucketOf(long nanos) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(nanos);
+        return histogram.percentile(1.0);
+    }
+
+    @Test
+    void valuesBelowSixtyFourAreExact() {
+        for (long nanos = 0; nanos < 64; nanos++) {
+            assertEquals(nanos, bucketOf(nanos));
+        }
+    }
+
+    @Test
+    void bucketsRoundTripWithinOneThirtySecond() {
+        for (long nanos = 64; nanos < MAX; nanos = nanos * 3 / 2 + 7) {
+            long bucket = bucketOf(nanos);
+            assertTrue(bucket >= nanos, nanos + " reported as " + bucket);
+            assertTrue(bucket - nanos <= nanos / 32, nanos + " reported as " + bucket);
+            assertEquals(bucket, bucketOf(bucket), "the highest equivalent of " + nanos + " is in its own bucket");
+            assertTrue(bucketOf(bucket + 1) > bucket, "the value after " + bucket + " starts the next bucket");
+        }
+    }
+
+    @Test
+    void powersOfTwoStartABucket() {
+        for (int shift = 6; shift < 36; shift++) {
+            long power = 1L << shift;
+            assertTrue(bucketOf(power - 1) < power, "2^" + shift + " - 1 belongs to the bucket below");
+            assertTrue(bucketOf(power) >= power);
+        }
+    }
+
+    @Test
+    void valuesOutsideTheRangeAreClamped() {
+        assertEquals(0, bucketOf(-5));
+        assertEquals(bucketOf(MAX), bucketOf(Long.MAX_VALUE));
+        assertEquals(MAX, bucketOf(MAX));
+    }
+
+    @Test
+    void percentilesFollowTheRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.5));
+        for (long nanos = 1; nanos <= 60; nanos++) {
+            histogram.record(nanos);
+        }
+        assertEquals(60, histogram.getCount());
+        assertEquals(1, histogram.percentile(0.0));
+        assertEquals(30, histogram.percentile(0.5));
+        assertEquals(54, histogram.percentile(0.9));
+        assertEquals(60, histogram.percentile(1.0));
+        assertEquals(60 * 61 / 2, histogram.getSum());
+    }
+
+    @Test
+    void countAtOrBelowOnlyCountsWholeBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(1_000_000);
+        long bucket = bucketOf(1_000_000);
+        assertEquals(1, histogram.countAtOrBelow(1_000_000 - 1));
+        assertEquals(1, histogram.countAtOrBelow(bucket - 1));
+        assertEquals(2, histogram.countAtOrBelow(bucket));
+    }
+
+    @Test
+    void addToMergesCountsAndSums() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(100);
+        second.record(5_000);
+        second.record(5_000);
+        LatencyHistogram merged = new LatencyHistogram();
+        first.addTo(merged);
+        second.addTo(merged);
+        assertEquals(3, merged.getCount());
+        assertEquals(10_100, merged.getSum());
+        assertEquals(bucketOf(5_000), merged.percentile(0.5));
+    }
+
+    @Test
+    void sharedRecordingLosesNoCounts() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(() -> {
+                for (int n = 0; n < 100_000; n++) {
+                    histogram.recordShared(1_000);
+                }
+            });
+            writers[i].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(400_000_000L, histogram.getSum());
+    }
+}
@@ -0,0 +1,78 @@
+package diningphilosophers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class WaitForGraphTest {
+
+    private static Owned heldBy(int owner) {
+        return () -> owner;
+    }
+
+    @Test
+    void freeForkEndsTheWalk() {
+        WaitForGraph graph = new WaitForGraph(3);
+        assertFalse(graph.beginWait(0, heldBy(Owned.NOBODY)));
+        assertEquals(0, graph.getDetections());
+    }
+
+    @Test
+    void ownerThatIsNotWaitingEndsTheWalk() {
+        WaitForGraph graph = new WaitForGraph(3);
+        assertFalse(graph.beginWait(0, heldBy(1)));
+    }
+
+    @Test
+    void twoPhilosophersWaitingOnEachOtherCloseACycle() {
+        WaitForGraph graph = new WaitForGraph(2);
+        assertFalse(graph.beginWait(0, heldBy(1)));
+        assertTrue(graph.beginWait(1, heldBy(0)));
+        assertEquals(1, graph.getDetections());
+    }
+
+    @Test
+    void lastPhilosopherToJoinARingClosesIt() {
+        WaitForGraph graph = new WaitForGraph(3);
+        assertFalse(graph.beginWait(0, heldBy(1)));
+        assertFalse(graph.beginWait(1, heldBy(2)));
+        assertTrue(graph.beginWait(2, heldBy(0)));
+        assertEquals(1, graph.getDetections());
+    }
+
+    @Test
+    void chainEndingAtAnEaterIsNoCycle() {
+        WaitForGraph graph = new WaitForGraph(4);
+        assertFalse(graph.beginWait(0, heldBy(1)));
+        assertFalse(graph.beginWait(1, heldBy(2)));
+        assertFalse(graph.beginWait(3, heldBy(0)));
+        assertEquals(0, graph.getDetections());
+    }
+
+    @Test
+    void endWaitBreaksTheChain() {
+        WaitForGraph graph = new WaitForGraph(3);
+        assertFalse(graph.beginWait(0, heldBy(1)));
+        assertFalse(graph.beginWait(1, heldBy(2)));
+        graph.endWait(1);
+        assertFalse(graph.beginWait(2, heldBy(0)));
+        assertEquals(0, graph.getDetections());
+    }
+
+    @Test
+    void cycleNotThroughTheWaiterIsLeftToItsMembers() {
+        WaitForGraph graph = new WaitForGraph(4);
+        assertFalse(graph.beginWait(1, heldBy(2)));
+        assertTrue(graph.beginWait(2, heldBy(1)));
+        assertFalse(graph.beginWait(0, heldBy(1)));
+        assertEquals(1, graph.getDetections());
+    }
+
+    @Test
+    void ownerOutsideTheGraphEndsTheWalk() {
+        WaitForGraph graph = new WaitForGraph(2);
+        assertFalse(graph.beginWait(0, heldBy(7)));
+    }
+}
@@ -0,0 +1,78 @@
+package diningphilosophers;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class WorkStealingEngineTest {
+
+    @BeforeEach
+    void silence() {
+        EventLog.install(EventLog.forMode("silent", false));
+    }
+
+    @AfterEach
+    void restore() {
+        MealStats.install(null);
+        Latency.install(null);
+        EventLog.install(EventLog.forMode("console", false));
+    }
+
+    // The default left-right strategy with the wait-for graph, as fast as it goes: a wait the graph
+    // misses leaves a cycle nobody breaks, and the meals stop
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3})
+    void mealsKeepComing(long seed) throws Exception {
+        SimulationConfig config = SimulationConfig.parse(new String[] {"--engine=work-stealing", "--tables=2",
+                "--zero-sleep=true", "--parallelism=4", "--duration=3s", "--log=silent", "--seed=" + seed});
+        WorkStealingEngine engine = new WorkStealingEngine(config);
+        Thread runner = new Thread(() -> {
+            try {
+                engine.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        runner.start();
+        try {
+            long last = meals();
+            for (int second = 0; second < 2; second++) {
+                TimeUnit.MILLISECONDS.sleep(1000);
+                long now = meals();
+                assertTrue(now > last, "no meals between " + last + " and " + now + " with seed " + seed);
+                last = now;
+            }
+        } finally {
+            runner.join();
+        }
+    }
+
+    // One worker and no pauses: a philosopher that could keep rescheduling itself on the worker's
+    // own queue would eat alone
+    @Test
+    void oneWorkerServesEveryone() throws Exception {
+        SimulationConfig config = SimulationConfig.parse(new String[] {"--engine=work-stealing", "--tables=20",
+                "--zero-sleep=true", "--parallelism=1", "--duration=1s", "--log=silent", "--seed=1"});
+        WorkStealingEngine engine = new WorkStealingEngine(config);
+        engine.run();
+        double fairness = engine.getFairness().getFairness();
+        assertTrue(fairness > 0.9, "Jain index " + fairness);
+    }
+
+    private static long meals() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (MealStats.get() == null && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        PhilosopherStats stats = MealStats.get();
+        assertNotNull(stats, "the engine never installed its statistics");
+        return stats.snapshot(System.nanoTime()).getMeals();
+    }
+}